@@ -1,7 +1,5 @@
 package org.jfrog.hudson;
 
-import com.google.common.collect.MapDifference;
-import com.google.common.collect.Maps;
 import hudson.EnvVars;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
@@ -11,7 +9,6 @@ import org.apache.commons.lang.StringUtils;
 import org.jfrog.build.api.Agent;
 import org.jfrog.build.api.Build;
 import org.jfrog.build.api.BuildAgent;
-import org.jfrog.build.api.BuildInfoProperties;
 import org.jfrog.build.api.BuildRetention;
 import org.jfrog.build.api.BuildType;
 import org.jfrog.build.api.LicenseControl;
@@ -21,13 +18,17 @@ import org.jfrog.build.api.release.Promotion;
 import org.jfrog.build.client.ArtifactoryBuildInfoClient;
 import org.jfrog.hudson.action.ActionableHelper;
 import org.jfrog.hudson.release.ReleaseAction;
+import org.jfrog.hudson.util.BuildInfoSpool;
+import org.jfrog.hudson.util.BuildInfoUploader;
 import org.jfrog.hudson.util.BuildRetentionFactory;
+import org.jfrog.hudson.util.Credentials;
+import org.jfrog.hudson.util.EnvironmentFilter;
 import org.jfrog.hudson.util.ExtractorUtils;
+import org.jfrog.hudson.util.IncludesExcludes;
 import org.jfrog.hudson.util.IssuesTrackerHelper;
 
 import java.io.IOException;
 import java.util.Calendar;
-import java.util.Map;
 
 /**
  * Handles build info creation and deployment
@@ -39,17 +40,58 @@ public class AbstractBuildInfoDeployer {
     protected AbstractBuild build;
     protected BuildListener listener;
     protected ArtifactoryBuildInfoClient client;
+    private Credentials deployerCredentials;
     private EnvVars env;
 
     public AbstractBuildInfoDeployer(BuildInfoAwareConfigurator configurator, AbstractBuild build,
-            BuildListener listener, ArtifactoryBuildInfoClient client) throws IOException, InterruptedException {
+            BuildListener listener, ArtifactoryBuildInfoClient client, Credentials deployerCredentials)
+            throws IOException, InterruptedException {
         this.configurator = configurator;
         this.build = build;
         this.listener = listener;
         this.client = client;
+        this.deployerCredentials = deployerCredentials;
         this.env = build.getEnvironment(listener);
     }
 
+    /**
+     * Deploys the build info and adds the result action to the build. The build info of servers that publish build
+     * info asynchronously is spooled instead, and the result action shows it pending until it is delivered.
+     */
+    protected void deployBuildInfo(Build buildInfo) throws IOException {
+        ArtifactoryServer server = configurator.getArtifactoryServer();
+        String url = server.getUrl() + "/api/build";
+        BuildInfoResultAction resultAction = new BuildInfoResultAction(server.getName(), build);
+        if (!server.isAsyncBuildInfo()) {
+            listener.getLogger().println("Deploying build info to: " + url);
+            sendBuildInfo(buildInfo);
+            // add the result action (prefer always the same index)
+            build.getActions().add(0, resultAction);
+            return;
+        }
+
+        listener.getLogger().println("Queuing build info for deployment to: " + url);
+        // added before the build info is spooled, since it might be delivered right away
+        resultAction.setDeliveryStatus(BuildInfoResultAction.DeliveryStatus.PENDING);
+        build.getActions().add(0, resultAction);
+        try {
+            BuildInfoSpool.getInstance().spool(buildInfo, server, deployerCredentials, build);
+        } catch (IOException e) {
+            resultAction.setDeliveryStatus(BuildInfoResultAction.DeliveryStatus.FAILED);
+            throw e;
+        }
+    }
+
+    /**
+     * Sends the build info compressed and without serializing it in memory, with the credentials of the client.
+     */
+    protected void sendBuildInfo(Build buildInfo) throws IOException {
+        ArtifactoryServer server = configurator.getArtifactoryServer();
+        BuildInfoUploader uploader = new BuildInfoUploader(server, deployerCredentials,
+                server.createProxyConfiguration(Hudson.getInstance().proxy));
+        uploader.upload(buildInfo, client);
+    }
+
     protected Build createBuildInfo(String buildAgentName, String buildAgentVersion, BuildType buildType) {
         BuildInfoBuilder builder = new BuildInfoBuilder(
                 ExtractorUtils.sanitizeBuildName(build.getParent().getFullName()))
@@ -96,19 +138,8 @@ public class AbstractBuildInfoDeployer {
         if (StringUtils.isNotBlank(revision)) {
             builder.vcsRevision(revision);
         }
-        if (configurator.isIncludeEnvVars()) {
-            for (Map.Entry<String, String> entry : env.entrySet()) {
-                builder.addProperty(BuildInfoProperties.BUILD_INFO_ENVIRONMENT_PREFIX + entry.getKey(),
-                        entry.getValue());
-            }
-        } else {
-            MapDifference<String, String> difference = Maps.difference(env, System.getenv());
-            Map<String, String> filteredEnvVars = difference.entriesOnlyOnLeft();
-            for (Map.Entry<String, String> entry : filteredEnvVars.entrySet()) {
-                builder.addProperty(BuildInfoProperties.BUILD_INFO_ENVIRONMENT_PREFIX + entry.getKey(),
-                        entry.getValue());
-            }
-        }
+        IncludesExcludes envVarsPatterns = configurator.getArtifactoryServer().getEnvVarsPatterns();
+        new EnvironmentFilter(configurator.isIncludeEnvVars(), envVarsPatterns).addProperties(env, builder);
 
         LicenseControl licenseControl = new LicenseControl(configurator.isRunChecks());
         if (configurator.isRunChecks()) {
@@ -168,10 +199,8 @@ public class AbstractBuildInfoDeployer {
     }
 
     private void addBuildInfoVariables(BuildInfoBuilder infoBuilder) {
-        Map<String, String> buildVariables = build.getBuildVariables();
-        for (Map.Entry<String, String> entry : buildVariables.entrySet()) {
-            infoBuilder.addProperty(
-                    BuildInfoProperties.BUILD_INFO_ENVIRONMENT_PREFIX + entry.getKey(), entry.getValue());
-        }
+        // build variables are not inherited from the environment of the Hudson process
+        IncludesExcludes envVarsPatterns = configurator.getArtifactoryServer().getEnvVarsPatterns();
+        new EnvironmentFilter(true, envVarsPatterns).addProperties(build.getBuildVariables(), infoBuilder);
     }
 }
@@ -16,6 +16,8 @@
 
 package org.jfrog.hudson;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import hudson.Extension;
 import hudson.Launcher;
 import hudson.maven.MavenModuleSet;
@@ -31,12 +33,15 @@ import org.apache.commons.lang.StringUtils;
 import org.jfrog.build.api.util.NullLog;
 import org.jfrog.build.client.ArtifactoryBuildInfoClient;
 import org.jfrog.build.client.ArtifactoryVersion;
+import org.jfrog.hudson.release.StagingStrategyCache;
+import org.jfrog.hudson.util.ArtifactoryClientPool;
 import org.kohsuke.stapler.QueryParameter;
 import org.kohsuke.stapler.StaplerRequest;
 
 import javax.servlet.ServletException;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Yossi Shaul
@@ -78,9 +83,15 @@ public class ArtifactoryBuilder extends Builder {
 
         private List<ArtifactoryServer> artifactoryServers;
 
+        /**
+         * The configured servers by name, replaced as a whole whenever the servers change
+         */
+        private transient volatile Map<String, ArtifactoryServer> serversByName = ImmutableMap.of();
+
         public DescriptorImpl() {
             super(ArtifactoryBuilder.class);
             load();
+            indexServers();
         }
 
         /**
@@ -152,7 +163,12 @@ public class ArtifactoryBuilder extends Builder {
             } else {
                 artifactoryServers = null;
             }
+            indexServers();
             save();
+            // the pooled clients and the cached values might use the previous server settings
+            ArtifactoryClientPool.getInstance().shutdown();
+            ArtifactoryServer.invalidateCaches();
+            StagingStrategyCache.invalidateAll();
             return super.configure(req, o);
         }
 
@@ -160,10 +176,37 @@ public class ArtifactoryBuilder extends Builder {
             return artifactoryServers;
         }
 
+        /**
+         * @return The configured server with the given name, null if there is none
+         */
+        public ArtifactoryServer getArtifactoryServer(String name) {
+            if (name == null) {
+                return null;
+            }
+            return serversByName.get(name);
+        }
+
+        private void indexServers() {
+            Map<String, ArtifactoryServer> index = Maps.newLinkedHashMap();
+            if (artifactoryServers != null) {
+                for (ArtifactoryServer server : artifactoryServers) {
+                    // the first server wins if several servers have the same name, like the lookups used to
+                    if (server.getName() != null && !index.containsKey(server.getName())) {
+                        index.put(server.getName(), server);
+                    }
+                }
+            }
+            serversByName = ImmutableMap.copyOf(index);
+        }
+
         // Required by external plugins.
         @SuppressWarnings({"UnusedDeclaration"})
         public void setArtifactoryServers(List<ArtifactoryServer> artifactoryServers) {
             this.artifactoryServers = artifactoryServers;
+            indexServers();
+            ArtifactoryClientPool.getInstance().shutdown();
+            ArtifactoryServer.invalidateCaches();
+            StagingStrategyCache.invalidateAll();
         }
     }
 }
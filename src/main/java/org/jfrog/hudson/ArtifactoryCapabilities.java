@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson;
+
+import org.jfrog.build.client.ArtifactoryVersion;
+
+/**
+ * The version and the features of an Artifactory server, as probed once and cached by
+ * {@link ArtifactoryServer#getCapabilities(org.jfrog.hudson.util.Credentials)}.
+ */
+public class ArtifactoryCapabilities {
+
+    private static final ArtifactoryVersion UNKNOWN_PROPERTIES_TOLERANT_VERSION = new ArtifactoryVersion("2.2.3");
+    private static final ArtifactoryVersion CHECKSUM_DEPLOY_VERSION = new ArtifactoryVersion("2.5.1");
+    private static final ArtifactoryVersion USER_PLUGINS_VERSION = new ArtifactoryVersion("2.5.2");
+
+    private final ArtifactoryVersion version;
+    private final String incompatibilityMessage;
+
+    private ArtifactoryCapabilities(ArtifactoryVersion version, String incompatibilityMessage) {
+        this.version = version;
+        this.incompatibilityMessage = incompatibilityMessage;
+    }
+
+    public static ArtifactoryCapabilities compatible(ArtifactoryVersion version) {
+        return new ArtifactoryCapabilities(version, null);
+    }
+
+    public static ArtifactoryCapabilities incompatible(String message) {
+        return new ArtifactoryCapabilities(null, message);
+    }
+
+    /**
+     * @return The version of the server, null if the server is not compatible with the plugin
+     */
+    public ArtifactoryVersion getVersion() {
+        return version;
+    }
+
+    public boolean isCompatible() {
+        return incompatibilityMessage == null;
+    }
+
+    /**
+     * @throws UnsupportedOperationException If the server is not compatible with the plugin
+     */
+    public void verifyCompatible() {
+        if (!isCompatible()) {
+            throw new UnsupportedOperationException(incompatibilityMessage);
+        }
+    }
+
+    /**
+     * @return True if the server is an Artifactory Pro server, with the add-ons installed
+     */
+    public boolean isPro() {
+        return version != null && version.hasAddons();
+    }
+
+    /**
+     * @return True if the server ignores build info fields it does not know, so the build info may be sent without
+     *         the build info client, and compressed
+     */
+    public boolean isCompressedBuildInfoSupported() {
+        return isAtLeast(UNKNOWN_PROPERTIES_TOLERANT_VERSION);
+    }
+
+    /**
+     * @return True if the server deploys an artifact from the checksums of its content, without the content itself
+     */
+    public boolean isChecksumDeploySupported() {
+        return isAtLeast(CHECKSUM_DEPLOY_VERSION);
+    }
+
+    /**
+     * @return True if the server lists its staging and promotion user plugins, which are a Pro feature
+     */
+    public boolean isUserPluginsSupported() {
+        return isPro() && isAtLeast(USER_PLUGINS_VERSION);
+    }
+
+    private boolean isAtLeast(ArtifactoryVersion minimalVersion) {
+        return version != null && version.isAtLeast(minimalVersion);
+    }
+}
@@ -303,17 +303,15 @@ public class ArtifactoryRedeployPublisher extends Recorder implements DeployerOv
 
         ArtifactoryServer server = getArtifactoryServer();
         Credentials preferredDeployer = CredentialResolver.getPreferredDeployer(this, server);
-        ArtifactoryBuildInfoClient client = server.createArtifactoryClient(preferredDeployer.getUsername(),
+        ArtifactoryBuildInfoClient client = server.acquireArtifactoryClient(preferredDeployer.getUsername(),
                 preferredDeployer.getPassword(), server.createProxyConfiguration(Hudson.getInstance().proxy));
         try {
-            verifySupportedArtifactoryVersion(client);
+            verifySupportedArtifactoryVersion(server, preferredDeployer);
             if (deployArtifacts) {
                 new ArtifactsDeployer(this, client, mavenBuild, listener).deploy();
             }
             if (deployBuildInfo) {
-                new MavenBuildInfoDeployer(this, client, mavenBuild, listener).deploy();
-                // add the result action (prefer always the same index)
-                build.getActions().add(0, new BuildInfoResultAction(getArtifactoryName(), build));
+                new MavenBuildInfoDeployer(this, client, mavenBuild, listener, preferredDeployer).deploy();
                 if (isAllowPromotionOfNonStagedBuilds()) {
                     build.getActions().add(new UnifiedPromoteBuildAction<ArtifactoryRedeployPublisher>(build, this));
                 }
@@ -322,7 +320,7 @@ public class ArtifactoryRedeployPublisher extends Recorder implements DeployerOv
         } catch (Exception e) {
             e.printStackTrace(listener.error(e.getMessage()));
         } finally {
-            client.shutdown();
+            server.releaseArtifactoryClient(client);
         }
         // failed
         build.setResult(Result.FAILURE);
@@ -343,10 +341,11 @@ public class ArtifactoryRedeployPublisher extends Recorder implements DeployerOv
     }
 
 
-    private void verifySupportedArtifactoryVersion(ArtifactoryBuildInfoClient client) throws Exception {
+    private void verifySupportedArtifactoryVersion(ArtifactoryServer server, Credentials credentials)
+            throws Exception {
         // get the version of artifactory, if it is an unsupported version, an UnsupportedOperationException
-        // will be thrown, and no deployment will commence.
-        client.verifyCompatibleArtifactoryVersion();
+        // will be thrown, and no deployment will commence. the version is cached by the server between builds.
+        server.getCapabilities(credentials).verifyCompatible();
     }
 
     protected List<MavenAbstractArtifactRecord> getArtifactRecordActions(MavenModuleSetBuild build) {
@@ -370,13 +369,9 @@ public class ArtifactoryRedeployPublisher extends Recorder implements DeployerOv
     }
 
     public ArtifactoryServer getArtifactoryServer() {
-        List<ArtifactoryServer> servers = getDescriptor().getArtifactoryServers();
-        for (ArtifactoryServer server : servers) {
-            if (server.getName().equals(getArtifactoryName())) {
-                return server;
-            }
-        }
-        return null;
+        ArtifactoryBuilder.DescriptorImpl descriptor = (ArtifactoryBuilder.DescriptorImpl)
+                Hudson.getInstance().getDescriptor(ArtifactoryBuilder.class);
+        return descriptor.getArtifactoryServer(getArtifactoryName());
     }
 
     private Result getTreshold() {
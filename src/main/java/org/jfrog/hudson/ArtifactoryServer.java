@@ -18,28 +18,34 @@ package org.jfrog.hudson;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.thoughtworks.xstream.converters.UnmarshallingContext;
 import hudson.model.BuildListener;
 import hudson.model.Hudson;
 import hudson.util.Scrambler;
 import hudson.util.XStream2;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.jfrog.build.api.util.NullLog;
 import org.jfrog.build.client.ArtifactoryBuildInfoClient;
 import org.jfrog.build.client.ArtifactoryDependenciesClient;
-import org.jfrog.build.client.ArtifactoryHttpClient;
-import org.jfrog.build.client.ArtifactoryVersion;
 import org.jfrog.build.client.ProxyConfiguration;
+import org.jfrog.hudson.util.ArtifactoryClientPool;
 import org.jfrog.hudson.util.Credentials;
+import org.jfrog.hudson.util.IncludesExcludes;
 import org.jfrog.hudson.util.JenkinsBuildInfoLog;
+import org.jfrog.hudson.util.RefreshingCache;
 import org.kohsuke.stapler.DataBoundConstructor;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -52,6 +58,30 @@ public class ArtifactoryServer implements Serializable {
     private static final Logger log = Logger.getLogger(ArtifactoryServer.class.getName());
 
     private static final int DEFAULT_CONNECTION_TIMEOUT = 300;    // 5 Minutes
+    private static final int DEFAULT_DEPLOYMENT_THREADS = 1;
+    private static final int DEFAULT_RESOLUTION_THREADS = 1;
+    private static final int DEFAULT_MAX_POOLED_CONNECTIONS = 5;
+    private static final int DEFAULT_REPOSITORY_CACHE_TTL = 300;    // 5 Minutes
+
+    /**
+     * Repository keys of every server and credentials, shared by all the configuration pages
+     */
+    private static final RefreshingCache<List<String>, List<String>> repositoryKeysCache =
+            new RefreshingCache<List<String>, List<String>>("artifactory-repositories-refresh");
+
+    /**
+     * User plugins of every server and credentials by plugin type, shared by the staging and promotion pages
+     */
+    private static final RefreshingCache<List<String>, Map<String, List<UserPluginInfo>>> userPluginsCache =
+            new RefreshingCache<List<String>, Map<String, List<UserPluginInfo>>>("artifactory-plugins-refresh");
+
+    private static final long CAPABILITIES_CACHE_TTL = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * Capabilities of every server and credentials, shared by the publishers, configurators and release actions
+     */
+    private static final RefreshingCache<List<String>, ArtifactoryCapabilities> capabilitiesCache =
+            new RefreshingCache<List<String>, ArtifactoryCapabilities>("artifactory-capabilities-refresh");
 
     private final String url;
 
@@ -61,22 +91,43 @@ public class ArtifactoryServer implements Serializable {
     // Network timeout in seconds to use both for connection establishment and for unanswered requests
     private int timeout = DEFAULT_CONNECTION_TIMEOUT;
     private boolean bypassProxy;
-
-    /**
-     * List of repository keys, last time we checked. Copy on write semantics.
-     */
-    private transient volatile List<String> repositories;
-
-    private transient volatile List<VirtualRepository> virtualRepositories;
+    // Maximum number of artifacts uploaded concurrently by a single deployment
+    private int deploymentThreads = DEFAULT_DEPLOYMENT_THREADS;
+    // Try to deploy artifacts by checksum before uploading their content
+    private boolean checksumDeploy;
+    // Maximum number of dependencies downloaded concurrently by a single resolution
+    private int resolutionThreads = DEFAULT_RESOLUTION_THREADS;
+    // Maximum size in megabytes of the dependency cache on every node, 0 disables the cache
+    private int dependencyCacheSize;
+    // Maximum number of idle connections kept alive by the master for every credentials
+    private int maxPooledConnections = DEFAULT_MAX_POOLED_CONNECTIONS;
+    // Time in seconds the repository keys are cached before they are fetched again
+    private int repositoryCacheTtl = DEFAULT_REPOSITORY_CACHE_TTL;
+    // Spool the build info on the master and send it in the background instead of during the build
+    private boolean asyncBuildInfo;
+    // Include and exclude patterns of the keys of the environment variables added to the build info
+    private String envVarsIncludePatterns;
+    private String envVarsExcludePatterns;
 
     @DataBoundConstructor
     public ArtifactoryServer(String url, Credentials deployerCredentials, Credentials resolverCredentials, int timeout,
-            boolean bypassProxy) {
+            boolean bypassProxy, int deploymentThreads, boolean checksumDeploy, int resolutionThreads,
+            int dependencyCacheSize, int maxPooledConnections, int repositoryCacheTtl, boolean asyncBuildInfo,
+            String envVarsIncludePatterns, String envVarsExcludePatterns) {
         this.url = StringUtils.removeEnd(url, "/");
         this.deployerCredentials = deployerCredentials;
         this.resolverCredentials = resolverCredentials;
         this.timeout = timeout > 0 ? timeout : DEFAULT_CONNECTION_TIMEOUT;
         this.bypassProxy = bypassProxy;
+        this.deploymentThreads = deploymentThreads > 0 ? deploymentThreads : DEFAULT_DEPLOYMENT_THREADS;
+        this.checksumDeploy = checksumDeploy;
+        this.resolutionThreads = resolutionThreads > 0 ? resolutionThreads : DEFAULT_RESOLUTION_THREADS;
+        this.dependencyCacheSize = Math.max(0, dependencyCacheSize);
+        this.maxPooledConnections = maxPooledConnections > 0 ? maxPooledConnections : DEFAULT_MAX_POOLED_CONNECTIONS;
+        this.repositoryCacheTtl = repositoryCacheTtl > 0 ? repositoryCacheTtl : DEFAULT_REPOSITORY_CACHE_TTL;
+        this.asyncBuildInfo = asyncBuildInfo;
+        this.envVarsIncludePatterns = envVarsIncludePatterns;
+        this.envVarsExcludePatterns = envVarsExcludePatterns;
     }
 
     public String getName() {
@@ -103,13 +154,76 @@ public class ArtifactoryServer implements Serializable {
         return bypassProxy;
     }
 
+    public int getDeploymentThreads() {
+        // configurations saved before this field was introduced are loaded with 0
+        return deploymentThreads > 0 ? deploymentThreads : DEFAULT_DEPLOYMENT_THREADS;
+    }
+
+    public boolean isChecksumDeploy() {
+        return checksumDeploy;
+    }
+
+    public int getResolutionThreads() {
+        // configurations saved before this field was introduced are loaded with 0
+        return resolutionThreads > 0 ? resolutionThreads : DEFAULT_RESOLUTION_THREADS;
+    }
+
+    public int getDependencyCacheSize() {
+        return dependencyCacheSize;
+    }
+
+    public int getMaxPooledConnections() {
+        // configurations saved before this field was introduced are loaded with 0
+        return maxPooledConnections > 0 ? maxPooledConnections : DEFAULT_MAX_POOLED_CONNECTIONS;
+    }
+
+    public int getRepositoryCacheTtl() {
+        // configurations saved before this field was introduced are loaded with 0
+        return repositoryCacheTtl > 0 ? repositoryCacheTtl : DEFAULT_REPOSITORY_CACHE_TTL;
+    }
+
+    public boolean isAsyncBuildInfo() {
+        return asyncBuildInfo;
+    }
+
+    public String getEnvVarsIncludePatterns() {
+        return envVarsIncludePatterns;
+    }
+
+    public String getEnvVarsExcludePatterns() {
+        return envVarsExcludePatterns;
+    }
+
+    /**
+     * @return The include and exclude patterns of the keys of the environment variables added to the build info
+     */
+    public IncludesExcludes getEnvVarsPatterns() {
+        return new IncludesExcludes(envVarsIncludePatterns, envVarsExcludePatterns);
+    }
+
+    /**
+     * @return The local repository keys of the server. The keys are cached and refreshed in the background, a new
+     * list is returned on every call.
+     */
     public List<String> getRepositoryKeys() {
-        Credentials resolvingCredentials = getResolvingCredentials();
-        ArtifactoryBuildInfoClient client = createArtifactoryClient(resolvingCredentials.getUsername(),
-                resolvingCredentials.getPassword(), createProxyConfiguration(Hudson.getInstance().proxy));
+        final Credentials resolvingCredentials = getResolvingCredentials();
         try {
-            repositories = client.getLocalRepositoriesKeys();
-        } catch (IOException e) {
+            return Lists.newArrayList(repositoryKeysCache.get(createCacheKey("local", resolvingCredentials),
+                    getRepositoryCacheTtlMillis(), new Callable<List<String>>() {
+                        public List<String> call() throws IOException {
+                            ArtifactoryBuildInfoClient client = acquireArtifactoryClient(
+                                    resolvingCredentials.getUsername(), resolvingCredentials.getPassword(),
+                                    createProxyConfiguration(Hudson.getInstance().proxy));
+                            try {
+                                return client.getLocalRepositoriesKeys();
+                            } finally {
+                                releaseArtifactoryClient(client);
+                            }
+                        }
+                    }));
+        } catch (IllegalArgumentException e) {
+            return Lists.newArrayList();
+        } catch (Exception e) {
             if (log.isLoggable(Level.FINE)) {
                 log.log(Level.WARNING, "Could not obtain local repositories list from '" + url + "'", e);
             } else {
@@ -117,13 +231,7 @@ public class ArtifactoryServer implements Serializable {
                         "Could not obtain local repositories list from '" + url + "': " + e.getMessage());
             }
             return Lists.newArrayList();
-        } catch(IllegalArgumentException e) {
-        	return Lists.newArrayList();
-        }
-        finally {
-            client.shutdown();
         }
-        return repositories;
     }
 
     public List<String> getReleaseRepositoryKeysFirst() {
@@ -146,13 +254,13 @@ public class ArtifactoryServer implements Serializable {
 
     public Map getStagingStrategy(PluginSettings selectedStagingPlugin, String buildName) throws IOException {
         Credentials resolvingCredentials = getResolvingCredentials();
-        ArtifactoryBuildInfoClient client = createArtifactoryClient(resolvingCredentials.getUsername(),
+        ArtifactoryBuildInfoClient client = acquireArtifactoryClient(resolvingCredentials.getUsername(),
                 resolvingCredentials.getPassword(), createProxyConfiguration(Hudson.getInstance().proxy));
         try {
             return client.getStagingStrategy(selectedStagingPlugin.getPluginName(), buildName,
                     selectedStagingPlugin.getParamMap());
         } finally {
-            client.shutdown();
+            releaseArtifactoryClient(client);
         }
     }
 
@@ -167,18 +275,28 @@ public class ArtifactoryServer implements Serializable {
         }
     }
 
+    /**
+     * @return The virtual repositories of the server. The keys are cached and refreshed in the background, a new list
+     * is returned on every call.
+     */
     public List<VirtualRepository> getVirtualRepositoryKeys() {
-        Credentials resolvingCredentials = getResolvingCredentials();
-        ArtifactoryBuildInfoClient client = createArtifactoryClient(resolvingCredentials.getUsername(),
-                resolvingCredentials.getPassword(), createProxyConfiguration(Hudson.getInstance().proxy));
+        final Credentials resolvingCredentials = getResolvingCredentials();
+        List<String> keys;
         try {
-            List<String> keys = client.getVirtualRepositoryKeys();
-            virtualRepositories = Lists.newArrayList(Lists.transform(keys, new Function<String, VirtualRepository>() {
-                public VirtualRepository apply(String from) {
-                    return new VirtualRepository(from, from);
-                }
-            }));
-        } catch (IOException e) {
+            keys = repositoryKeysCache.get(createCacheKey("virtual", resolvingCredentials),
+                    getRepositoryCacheTtlMillis(), new Callable<List<String>>() {
+                        public List<String> call() throws IOException {
+                            ArtifactoryBuildInfoClient client = acquireArtifactoryClient(
+                                    resolvingCredentials.getUsername(), resolvingCredentials.getPassword(),
+                                    createProxyConfiguration(Hudson.getInstance().proxy));
+                            try {
+                                return client.getVirtualRepositoryKeys();
+                            } finally {
+                                releaseArtifactoryClient(client);
+                            }
+                        }
+                    });
+        } catch (Exception e) {
             if (log.isLoggable(Level.FINE)) {
                 log.log(Level.WARNING, "Could not obtain virtual repositories list from '" + url + "'", e);
             } else {
@@ -186,22 +304,61 @@ public class ArtifactoryServer implements Serializable {
                         "Could not obtain virtual repositories list from '" + url + "': " + e.getMessage());
             }
             return Lists.newArrayList();
-        } finally {
-            client.shutdown();
         }
+        List<VirtualRepository> virtualRepositories = Lists.newArrayList(Lists.transform(keys,
+                new Function<String, VirtualRepository>() {
+                    public VirtualRepository apply(String from) {
+                        return new VirtualRepository(from, from);
+                    }
+                }));
         virtualRepositories
                 .add(0, new VirtualRepository("-- To use Artifactory for resolution select a virtual repository --",
                         ""));
         return virtualRepositories;
     }
 
+    private long getRepositoryCacheTtlMillis() {
+        return getRepositoryCacheTtl() * 1000L;
+    }
+
+    /**
+     * @return Key of a value fetched from this server with the given credentials. The password is hashed, so the
+     *         long lived keys do not keep it in memory as plain text.
+     */
+    private List<String> createCacheKey(String kind, Credentials credentials) {
+        return Arrays.asList(kind, url, credentials.getUsername(),
+                DigestUtils.sha256Hex(StringUtils.defaultString(credentials.getPassword())));
+    }
+
+    /**
+     * Drops the cached repositories, user plugins and capabilities of all the servers, once the servers are
+     * reconfigured.
+     */
+    public static void invalidateCaches() {
+        repositoryKeysCache.invalidateAll();
+        userPluginsCache.invalidateAll();
+        capabilitiesCache.invalidateAll();
+    }
+
     public boolean isArtifactoryPro() {
-        Credentials resolvingCredentials = getResolvingCredentials();
+        ArtifactoryCapabilities capabilities = getResolvingCapabilities();
+        return capabilities != null && capabilities.isPro();
+    }
+
+    /**
+     * @return True if the server lists staging and promotion user plugins
+     */
+    public boolean isUserPluginsSupported() {
+        ArtifactoryCapabilities capabilities = getResolvingCapabilities();
+        return capabilities != null && capabilities.isUserPluginsSupported();
+    }
+
+    /**
+     * @return The capabilities of the server as seen by the resolving user, null if the server could not be reached
+     */
+    private ArtifactoryCapabilities getResolvingCapabilities() {
         try {
-            ArtifactoryHttpClient client = new ArtifactoryHttpClient(url, resolvingCredentials.getUsername(),
-                    resolvingCredentials.getPassword(), new NullLog());
-            ArtifactoryVersion version = client.getVersion();
-            return version.hasAddons();
+            return getCapabilities(getResolvingCredentials());
         } catch (IOException e) {
             if (log.isLoggable(Level.FINE)) {
                 log.log(Level.WARNING, "Could not obtain artifactory version from '" + url + "'", e);
@@ -210,7 +367,43 @@ public class ArtifactoryServer implements Serializable {
                         "Could not obtain artifactory version from '" + url + "': " + e.getMessage());
             }
         }
-        return false;
+        return null;
+    }
+
+    /**
+     * Returns the capabilities of the server as seen with the given credentials. The capabilities are probed once and
+     * cached, so callers may ask for them on every request or build.
+     *
+     * @throws IOException If the server could not be reached
+     */
+    public ArtifactoryCapabilities getCapabilities(final Credentials credentials) throws IOException {
+        try {
+            return capabilitiesCache.get(createCacheKey("capabilities", credentials), CAPABILITIES_CACHE_TTL,
+                    new Callable<ArtifactoryCapabilities>() {
+                        public ArtifactoryCapabilities call() throws IOException {
+                            return probeCapabilities(credentials);
+                        }
+                    });
+        } catch (IOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private ArtifactoryCapabilities probeCapabilities(Credentials credentials) throws IOException {
+        ArtifactoryBuildInfoClient client = acquireArtifactoryClient(credentials.getUsername(),
+                credentials.getPassword(), createProxyConfiguration(Hudson.getInstance().proxy));
+        try {
+            return ArtifactoryCapabilities.compatible(client.verifyCompatibleArtifactoryVersion());
+        } catch (UnsupportedOperationException e) {
+            // an incompatible server is a valid answer, cache it instead of asking again on every build
+            return ArtifactoryCapabilities.incompatible(e.getMessage());
+        } finally {
+            releaseArtifactoryClient(client);
+        }
     }
 
     public List<UserPluginInfo> getStagingUserPluginInfo() {
@@ -225,6 +418,20 @@ public class ArtifactoryServer implements Serializable {
         return infosToReturn;
     }
 
+    /**
+     * Fetches the user plugins of the server in the background, if they are not cached yet, so the staging and
+     * promotion pages do not wait for them.
+     */
+    public void prefetchUserPluginInfo() {
+        final Credentials resolvingCredentials = getResolvingCredentials();
+        userPluginsCache.prefetch(createCacheKey("plugins", resolvingCredentials),
+                new Callable<Map<String, List<UserPluginInfo>>>() {
+                    public Map<String, List<UserPluginInfo>> call() throws IOException {
+                        return fetchUserPluginInfo(resolvingCredentials);
+                    }
+                });
+    }
+
     /**
      * This method might run on slaves, this is why we provide it with a proxy from the master config
      */
@@ -243,6 +450,20 @@ public class ArtifactoryServer implements Serializable {
         return client;
     }
 
+    /**
+     * Acquires a client from the pool of the master, which keeps its connection alive between requests. The client
+     * must be released with {@link #releaseArtifactoryClient(ArtifactoryBuildInfoClient)} instead of being shut down,
+     * and should not be used on slaves.
+     */
+    public ArtifactoryBuildInfoClient acquireArtifactoryClient(String userName, String password,
+            ProxyConfiguration proxyConfiguration) {
+        return ArtifactoryClientPool.getInstance().acquire(this, userName, password, proxyConfiguration);
+    }
+
+    public void releaseArtifactoryClient(ArtifactoryBuildInfoClient client) {
+        ArtifactoryClientPool.getInstance().release(client);
+    }
+
     public ProxyConfiguration createProxyConfiguration(hudson.ProxyConfiguration proxy) {
         ProxyConfiguration proxyConfiguration = null;
         if (proxy != null) {
@@ -322,28 +543,56 @@ public class ArtifactoryServer implements Serializable {
     private transient String password;    // base64 scrambled password
 
     private void gatherUserPluginInfo(List<UserPluginInfo> infosToReturn, String pluginKey) {
-        Credentials resolvingCredentials = getResolvingCredentials();
-        ArtifactoryBuildInfoClient client = createArtifactoryClient(resolvingCredentials.getUsername(),
-                resolvingCredentials.getPassword(), createProxyConfiguration(Hudson.getInstance().proxy));
+        final Credentials resolvingCredentials = getResolvingCredentials();
         try {
+            Map<String, List<UserPluginInfo>> userPluginInfo = userPluginsCache.get(
+                    createCacheKey("plugins", resolvingCredentials), getRepositoryCacheTtlMillis(),
+                    new Callable<Map<String, List<UserPluginInfo>>>() {
+                        public Map<String, List<UserPluginInfo>> call() throws IOException {
+                            return fetchUserPluginInfo(resolvingCredentials);
+                        }
+                    });
+            List<UserPluginInfo> infos = userPluginInfo.get(pluginKey);
+            if (infos != null) {
+                infosToReturn.addAll(infos);
+            }
+        } catch (Exception e) {
+            log.log(Level.WARNING, "Failed to obtain user plugin info: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return The user plugins of every plugin type, sorted by name, none if the server does not support them
+     */
+    private Map<String, List<UserPluginInfo>> fetchUserPluginInfo(Credentials credentials) throws IOException {
+        if (!getCapabilities(credentials).isUserPluginsSupported()) {
+            return Collections.emptyMap();
+        }
+        ArtifactoryBuildInfoClient client = acquireArtifactoryClient(credentials.getUsername(),
+                credentials.getPassword(), createProxyConfiguration(Hudson.getInstance().proxy));
+        try {
+            Map<String, List<UserPluginInfo>> infosByKey = Maps.newHashMap();
             Map<String, List<Map>> userPluginInfo = client.getUserPluginInfo();
-            if (userPluginInfo != null && userPluginInfo.containsKey(pluginKey)) {
-                List<Map> stagingUserPluginInfo = userPluginInfo.get(pluginKey);
-                if (stagingUserPluginInfo != null) {
-                    for (Map stagingPluginInfo : stagingUserPluginInfo) {
-                        infosToReturn.add(new UserPluginInfo(stagingPluginInfo));
+            if (userPluginInfo != null) {
+                for (Map.Entry<String, List<Map>> pluginEntry : userPluginInfo.entrySet()) {
+                    if (pluginEntry.getValue() == null) {
+                        continue;
                     }
-                    Collections.sort(infosToReturn, new Comparator<UserPluginInfo>() {
+                    List<UserPluginInfo> infos = Lists.newArrayList();
+                    for (Map pluginInfo : pluginEntry.getValue()) {
+                        infos.add(new UserPluginInfo(pluginInfo));
+                    }
+                    Collections.sort(infos, new Comparator<UserPluginInfo>() {
                         public int compare(UserPluginInfo o1, UserPluginInfo o2) {
                             return o1.getPluginName().compareTo(o2.getPluginName());
                         }
                     });
+                    infosByKey.put(pluginEntry.getKey(), Collections.unmodifiableList(infos));
                 }
             }
-        } catch (IOException e) {
-            log.log(Level.WARNING, "Failed to obtain user plugin info: " + e.getMessage());
+            return Collections.unmodifiableMap(infosByKey);
         } finally {
-            client.shutdown();
+            releaseArtifactoryClient(client);
         }
     }
 }
@@ -22,13 +22,25 @@ import hudson.model.BuildBadgeAction;
 import org.jfrog.hudson.util.ExtractorUtils;
 
 /**
- * Result of the redeploy publisher. Currently only a link to Artifactory build info.
+ * Result of the redeploy publisher. A link to Artifactory build info, and the delivery status of build info that is
+ * published asynchronously.
  *
  * @author Yossi Shaul
  */
 public class BuildInfoResultAction implements BuildBadgeAction {
 
+    /**
+     * Delivery status of build info that is published asynchronously
+     */
+    public enum DeliveryStatus {
+        PENDING, FAILED
+    }
+
     private final String url;
+    /**
+     * Null once the build info is delivered, and for build info that is published synchronously
+     */
+    private volatile DeliveryStatus deliveryStatus;
 
     /**
      * @deprecated Only here to keep compatibility with version 1.0.7 and below (part of the xstream de-serialization)
@@ -50,9 +62,31 @@ public class BuildInfoResultAction implements BuildBadgeAction {
     }
 
     public String getDisplayName() {
+        if (deliveryStatus == DeliveryStatus.PENDING) {
+            return "Artifactory Build Info (pending delivery)";
+        }
+        if (deliveryStatus == DeliveryStatus.FAILED) {
+            return "Artifactory Build Info (delivery failed)";
+        }
         return "Artifactory Build Info";
     }
 
+    public DeliveryStatus getDeliveryStatus() {
+        return deliveryStatus;
+    }
+
+    public void setDeliveryStatus(DeliveryStatus deliveryStatus) {
+        this.deliveryStatus = deliveryStatus;
+    }
+
+    public boolean isDeliveryPending() {
+        return deliveryStatus == DeliveryStatus.PENDING;
+    }
+
+    public boolean isDeliveryFailed() {
+        return deliveryStatus == DeliveryStatus.FAILED;
+    }
+
     public String getUrlName() {
         // for backward compatibility if url is empty calculate it from the old structs
         if (url == null && artifactoryRedeployPublisher != null && build != null) {
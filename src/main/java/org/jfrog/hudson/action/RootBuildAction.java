@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.action;
+
+import hudson.model.InvisibleAction;
+
+/**
+ * Remembers the root build of a build, as resolved by {@link org.jfrog.hudson.util.BuildUniqueIdentifierHelper}, so
+ * the upstream chain of the build is walked only once and downstream builds inherit the root of their upstream build.
+ */
+public class RootBuildAction extends InvisibleAction {
+    private final String rootProjectName;
+    private final int rootBuildNumber;
+    private final String upstreamIdentifier;
+
+    /**
+     * @param rootProjectName    The full name of the project of the root build, null if the build has no root build
+     * @param rootBuildNumber    The number of the root build
+     * @param upstreamIdentifier The identifier of the root build
+     */
+    public RootBuildAction(String rootProjectName, int rootBuildNumber, String upstreamIdentifier) {
+        this.rootProjectName = rootProjectName;
+        this.rootBuildNumber = rootBuildNumber;
+        this.upstreamIdentifier = upstreamIdentifier;
+    }
+
+    public boolean hasRootBuild() {
+        return rootProjectName != null;
+    }
+
+    public String getRootProjectName() {
+        return rootProjectName;
+    }
+
+    public int getRootBuildNumber() {
+        return rootBuildNumber;
+    }
+
+    /**
+     * @return The identifier of the root build, null if the build has no root build
+     */
+    public String getUpstreamIdentifier() {
+        return upstreamIdentifier;
+    }
+}
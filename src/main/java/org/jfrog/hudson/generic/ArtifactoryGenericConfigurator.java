@@ -17,12 +17,10 @@ import org.jfrog.build.api.Artifact;
 import org.jfrog.build.api.Dependency;
 import org.jfrog.build.api.dependency.UserBuildDependency;
 import org.jfrog.build.client.ArtifactoryBuildInfoClient;
-import org.jfrog.build.client.ArtifactoryDependenciesClient;
 import org.jfrog.build.client.ProxyConfiguration;
 import org.jfrog.hudson.ArtifactoryBuilder;
 import org.jfrog.hudson.ArtifactoryServer;
 import org.jfrog.hudson.BuildInfoAwareConfigurator;
-import org.jfrog.hudson.BuildInfoResultAction;
 import org.jfrog.hudson.DeployerOverrider;
 import org.jfrog.hudson.ServerDetails;
 import org.jfrog.hudson.action.ActionableHelper;
@@ -56,13 +54,19 @@ public class ArtifactoryGenericConfigurator extends BuildWrapper implements Depl
     private final boolean includeEnvVars;
     private final boolean discardOldBuilds;
     private final boolean discardBuildArtifacts;
+    /**
+     * Keep deploying the remaining artifacts when an artifact fails to deploy and report all the failures at the end
+     */
+    private final boolean collectDeploymentErrors;
+    private final boolean incrementalResolution;
     private transient List<Dependency> publishedDependencies;
     private transient List<UserBuildDependency> buildDependencies;
 
     @DataBoundConstructor
     public ArtifactoryGenericConfigurator(ServerDetails details, Credentials overridingDeployerCredentials,
             String deployPattern, String resolvePattern, String matrixParams, boolean deployBuildInfo,
-            boolean includeEnvVars, boolean discardOldBuilds, boolean discardBuildArtifacts) {
+            boolean includeEnvVars, boolean discardOldBuilds, boolean discardBuildArtifacts,
+            boolean collectDeploymentErrors, boolean incrementalResolution) {
         this.details = details;
         this.overridingDeployerCredentials = overridingDeployerCredentials;
         this.deployPattern = deployPattern;
@@ -72,6 +76,8 @@ public class ArtifactoryGenericConfigurator extends BuildWrapper implements Depl
         this.includeEnvVars = includeEnvVars;
         this.discardOldBuilds = discardOldBuilds;
         this.discardBuildArtifacts = discardBuildArtifacts;
+        this.collectDeploymentErrors = collectDeploymentErrors;
+        this.incrementalResolution = incrementalResolution;
     }
 
     public String getArtifactoryName() {
@@ -102,6 +108,14 @@ public class ArtifactoryGenericConfigurator extends BuildWrapper implements Depl
         return matrixParams;
     }
 
+    public boolean isCollectDeploymentErrors() {
+        return collectDeploymentErrors;
+    }
+
+    public boolean isIncrementalResolution() {
+        return incrementalResolution;
+    }
+
     public boolean isIncludeEnvVars() {
         return includeEnvVars;
     }
@@ -148,13 +162,9 @@ public class ArtifactoryGenericConfigurator extends BuildWrapper implements Depl
     }
 
     public ArtifactoryServer getArtifactoryServer() {
-        List<ArtifactoryServer> servers = getDescriptor().getArtifactoryServers();
-        for (ArtifactoryServer server : servers) {
-            if (server.getName().equals(getArtifactoryName())) {
-                return server;
-            }
-        }
-        return null;
+        ArtifactoryBuilder.DescriptorImpl descriptor = (ArtifactoryBuilder.DescriptorImpl)
+                Hudson.getInstance().getDescriptor(ArtifactoryBuilder.class);
+        return descriptor.getArtifactoryServer(getArtifactoryName());
     }
 
     @Override
@@ -194,20 +204,16 @@ public class ArtifactoryGenericConfigurator extends BuildWrapper implements Depl
             proxyConfiguration.username = proxy.getUserName();
             proxyConfiguration.password = proxy.getPassword();
         }
-        ArtifactoryDependenciesClient dependenciesClient = server.createArtifactoryDependenciesClient(
-                preferredDeployer.getUsername(), preferredDeployer.getPassword(), proxyConfiguration,
-                listener);
         try {
-            GenericArtifactsResolver artifactsResolver = new GenericArtifactsResolver(build, listener,
-                    dependenciesClient, getResolvePattern());
-            publishedDependencies = artifactsResolver.retrievePublishedDependencies();
-            buildDependencies = artifactsResolver.retrieveBuildDependencies();
+            GenericArtifactsResolver artifactsResolver = new GenericArtifactsResolver(build, listener, server,
+                    preferredDeployer, proxyConfiguration, getResolvePattern(), isIncrementalResolution());
+            artifactsResolver.resolve();
+            publishedDependencies = artifactsResolver.getPublishedDependencies();
+            buildDependencies = artifactsResolver.getBuildDependencies();
 
             return createEnvironmentOnSuccessfulSetup();
         } catch (Exception e) {
             e.printStackTrace(listener.error(e.getMessage()));
-        } finally {
-            dependenciesClient.shutdown();
         }
 
         return null;
@@ -230,7 +236,7 @@ public class ArtifactoryGenericConfigurator extends BuildWrapper implements Depl
                 } else {
                     preferredDeployer = server.getResolvingCredentials();
                 }
-                ArtifactoryBuildInfoClient client = server.createArtifactoryClient(preferredDeployer.getUsername(),
+                ArtifactoryBuildInfoClient client = server.acquireArtifactoryClient(preferredDeployer.getUsername(),
                         preferredDeployer.getPassword(), server.createProxyConfiguration(Hudson.getInstance().proxy));
                 try {
                     GenericArtifactsDeployer artifactsDeployer = new GenericArtifactsDeployer(build,
@@ -240,9 +246,8 @@ public class ArtifactoryGenericConfigurator extends BuildWrapper implements Depl
                     List<Artifact> deployedArtifacts = artifactsDeployer.getDeployedArtifacts();
                     if (deployBuildInfo) {
                         new GenericBuildInfoDeployer(ArtifactoryGenericConfigurator.this, client, build,
-                                listener, deployedArtifacts, buildDependencies, publishedDependencies).deploy();
-                        // add the result action (prefer always the same index)
-                        build.getActions().add(0, new BuildInfoResultAction(getArtifactoryName(), build));
+                                listener, preferredDeployer, deployedArtifacts, buildDependencies,
+                                publishedDependencies).deploy();
                         build.getActions().add(new UnifiedPromoteBuildAction<ArtifactoryGenericConfigurator>(build,
                                 ArtifactoryGenericConfigurator.this));
                     }
@@ -251,7 +256,7 @@ public class ArtifactoryGenericConfigurator extends BuildWrapper implements Depl
                 } catch (Exception e) {
                     e.printStackTrace(listener.error(e.getMessage()));
                 } finally {
-                    client.shutdown();
+                    server.releaseArtifactoryClient(client);
                 }
 
                 // failed
@@ -1,40 +1,130 @@
 package org.jfrog.hudson.generic;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import hudson.FilePath;
+import hudson.remoting.Future;
+import hudson.remoting.Pipe;
 import hudson.remoting.VirtualChannel;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
 import org.jfrog.build.api.Dependency;
+import org.jfrog.build.api.builder.DependencyBuilder;
 import org.jfrog.build.api.dependency.DownloadableArtifact;
-import org.jfrog.build.api.util.FileChecksumCalculator;
 import org.jfrog.build.api.util.Log;
 import org.jfrog.build.client.ArtifactoryDependenciesClient;
 import org.jfrog.build.util.DependenciesDownloader;
 import org.jfrog.build.util.DependenciesDownloaderHelper;
+import org.jfrog.hudson.util.ChecksumCache;
+import org.jfrog.hudson.util.ChecksumCalculator;
+import org.jfrog.hudson.util.ClientPool;
+import org.jfrog.hudson.util.ConcurrentTaskRunner;
+import org.jfrog.hudson.util.DependencyCache;
+import org.jfrog.hudson.util.PluginDependencyHelper;
+import org.jfrog.hudson.util.RemoteChecksumReader;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.security.NoSuchAlgorithmException;
+import java.io.InterruptedIOException;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Primary implementation of dependencies downloader,
  * handles Jenkins slaves and re-use a client for HTTP communication.
+ * <p/>
+ * When created with a pool of clients and more than one thread, every artifact is downloaded by a task of its own
+ * using a pooled client, and the log lines of each artifact are written together.
+ * <p/>
+ * When the dependency cache of the node or the incremental mode is enabled, the SHA1 checksum of every artifact is
+ * read from Artifactory first. In incremental mode, artifacts whose target file exists with the same checksum are not
+ * downloaded again. Artifacts found in the dependency cache are placed in the workspace without downloading them and
+ * downloaded artifacts are added to the cache.
  *
  * @author Shay Yaakov
  */
 public class DependenciesDownloaderImpl implements DependenciesDownloader {
 
+    private static final int PIPE_CHUNK_SIZE = 32 * 1024;
+
     private ArtifactoryDependenciesClient client;
     private FilePath workspace;
     private Log log;
+    private String checksumCacheDir;
+    private ClientPool<ArtifactoryDependenciesClient> downloadClients;
+    private int threads;
+    private boolean saveChecksumCache = true;
+    private RemoteChecksumReader checksumReader;
+    private String dependencyCacheDir;
+    private long dependencyCacheSize;
+    private boolean incremental;
 
     public DependenciesDownloaderImpl(ArtifactoryDependenciesClient client, FilePath workspace, Log log) {
         this.client = client;
         this.workspace = workspace;
         this.log = log;
+        this.checksumCacheDir = PluginDependencyHelper.getChecksumCacheDirectory(workspace).getRemote();
+    }
+
+    /**
+     * @param client          The client used for everything but the concurrent downloads
+     * @param log             The log of the downloads, which also receives the log lines of the concurrent downloads
+     * @param downloadClients Pool of clients for the concurrent downloads, null to download with the main client
+     * @param threads         Maximum number of concurrent downloads
+     */
+    public DependenciesDownloaderImpl(ArtifactoryDependenciesClient client, FilePath workspace, Log log,
+            ClientPool<ArtifactoryDependenciesClient> downloadClients, int threads) {
+        this(client, workspace, log);
+        this.downloadClients = downloadClients;
+        this.threads = threads;
+    }
+
+    /**
+     * Downloader of a single artifact in a concurrent download, the checksum cache is saved once all are done.
+     */
+    private DependenciesDownloaderImpl(DependenciesDownloaderImpl parent, ArtifactoryDependenciesClient client,
+            Log log) {
+        this.client = client;
+        this.workspace = parent.workspace;
+        this.log = log;
+        this.checksumCacheDir = parent.checksumCacheDir;
+        this.dependencyCacheDir = parent.dependencyCacheDir;
+        this.dependencyCacheSize = parent.dependencyCacheSize;
+        this.saveChecksumCache = false;
+    }
+
+    /**
+     * Sets the reader of the checksums of the artifacts before they are downloaded, required by the dependency cache
+     * and by the incremental mode.
+     */
+    public void setChecksumReader(RemoteChecksumReader checksumReader) {
+        this.checksumReader = checksumReader;
+    }
+
+    /**
+     * Enables the dependency cache of the node the workspace belongs to.
+     *
+     * @param maxSize The maximal size of the cache in bytes
+     */
+    public void setDependencyCacheSize(long maxSize) {
+        this.dependencyCacheDir = PluginDependencyHelper.getDependencyCacheDirectory(workspace).getRemote();
+        this.dependencyCacheSize = maxSize;
+    }
+
+    /**
+     * @param incremental True to download only artifacts whose target file is missing or has a different checksum
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
     }
 
     public ArtifactoryDependenciesClient getClient() {
@@ -42,8 +132,113 @@ public class DependenciesDownloaderImpl implements DependenciesDownloader {
     }
 
     public List<Dependency> download(Set<DownloadableArtifact> downloadableArtifacts) throws IOException {
-        DependenciesDownloaderHelper helper = new DependenciesDownloaderHelper(this, log);
-        return helper.downloadDependencies(downloadableArtifacts);
+        try {
+            List<Dependency> dependencies = Lists.newArrayList();
+            Set<DownloadableArtifact> artifactsToDownload = downloadableArtifacts;
+            if (checksumReader != null && (incremental || dependencyCacheDir != null)) {
+                artifactsToDownload = resolveLocally(downloadableArtifacts, dependencies);
+            }
+            if (artifactsToDownload.isEmpty()) {
+                return dependencies;
+            }
+            if (downloadClients == null || threads < 2 || artifactsToDownload.size() < 2) {
+                DependenciesDownloaderHelper helper = new DependenciesDownloaderHelper(this, log);
+                dependencies.addAll(helper.downloadDependencies(artifactsToDownload));
+            } else {
+                dependencies.addAll(downloadConcurrently(artifactsToDownload));
+            }
+            return dependencies;
+        } finally {
+            if (saveChecksumCache) {
+                saveChecksumCache();
+            }
+        }
+    }
+
+    private List<Dependency> downloadConcurrently(Set<DownloadableArtifact> downloadableArtifacts)
+            throws IOException {
+        List<DownloadTask> tasks = Lists.newArrayListWithCapacity(downloadableArtifacts.size());
+        for (DownloadableArtifact downloadableArtifact : downloadableArtifacts) {
+            tasks.add(new DownloadTask(downloadableArtifact));
+        }
+        List<List<Dependency>> results;
+        try {
+            results = new ConcurrentTaskRunner("artifactory-downloader", threads, true, log)
+                    .run(tasks);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while downloading dependencies");
+        }
+        List<Dependency> dependencies = Lists.newArrayList();
+        for (List<Dependency> result : results) {
+            dependencies.addAll(result);
+        }
+        return dependencies;
+    }
+
+    /**
+     * Keeps the unchanged artifacts of the workspace and places the artifacts found in the dependency cache in the
+     * workspace, using a single remote call.
+     *
+     * @param dependencies The list to add the dependencies of the artifacts resolved locally to
+     * @return The artifacts that should be downloaded
+     */
+    private Set<DownloadableArtifact> resolveLocally(Set<DownloadableArtifact> downloadableArtifacts,
+            List<Dependency> dependencies) throws IOException {
+        List<ChecksumTask> tasks = Lists.newArrayListWithCapacity(downloadableArtifacts.size());
+        for (DownloadableArtifact downloadableArtifact : downloadableArtifacts) {
+            tasks.add(new ChecksumTask(downloadableArtifact));
+        }
+        Map<String, ChecksumCalculator.Checksums> remoteChecksums = Maps.newHashMap();
+        Map<String, DownloadableArtifact> artifactsByTarget = Maps.newHashMap();
+        try {
+            List<ChecksumCalculator.Checksums> results = new ConcurrentTaskRunner("artifactory-checksums",
+                    downloadClients != null ? threads : 1, true, log).run(tasks);
+            for (int i = 0; i < tasks.size(); i++) {
+                if (results.get(i) != null) {
+                    DownloadableArtifact downloadableArtifact = tasks.get(i).downloadableArtifact;
+                    String target = getTargetDir(downloadableArtifact.getTargetDirPath(),
+                            downloadableArtifact.getRelativeDirPath());
+                    remoteChecksums.put(target, results.get(i));
+                    artifactsByTarget.put(target, downloadableArtifact);
+                }
+            }
+            if (remoteChecksums.isEmpty()) {
+                return downloadableArtifacts;
+            }
+            Map<String, ChecksumCalculator.Checksums> resolved = workspace.act(new ResolveLocallyCallable(
+                    remoteChecksums, incremental, dependencyCacheDir, dependencyCacheSize, checksumCacheDir));
+            Set<DownloadableArtifact> artifactsToDownload = Sets.newHashSet(downloadableArtifacts);
+            for (Map.Entry<String, ChecksumCalculator.Checksums> entry : resolved.entrySet()) {
+                DownloadableArtifact downloadableArtifact = artifactsByTarget.get(entry.getKey());
+                artifactsToDownload.remove(downloadableArtifact);
+                dependencies.add(new DependencyBuilder().id(downloadableArtifact.getFilePath())
+                        .md5(entry.getValue().getMd5()).sha1(entry.getValue().getSha1()).build());
+            }
+            if (!resolved.isEmpty()) {
+                log.info("Skipped downloading " + resolved.size() + " out of " + downloadableArtifacts.size() +
+                        " artifacts found unchanged in the workspace or in the dependency cache of the node");
+            }
+            return artifactsToDownload;
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while resolving dependencies locally");
+        }
+    }
+
+    private String getArtifactUrl(DownloadableArtifact downloadableArtifact) {
+        StringBuilder url = new StringBuilder(downloadableArtifact.getRepoUrl()).append("/")
+                .append(downloadableArtifact.getFilePath());
+        if (StringUtils.isNotBlank(downloadableArtifact.getMatrixParameters())) {
+            url.append(";").append(downloadableArtifact.getMatrixParameters());
+        }
+        return url.toString();
+    }
+
+    private void saveChecksumCache() throws IOException {
+        try {
+            workspace.act(new SaveChecksumCacheCallable(checksumCacheDir));
+        } catch (InterruptedException e) {
+            log.warn("Caught interrupted exception: " + e.getLocalizedMessage());
+        }
     }
 
     public String getTargetDir(String targetDir, String relativeDir) {
@@ -51,13 +246,42 @@ public class DependenciesDownloaderImpl implements DependenciesDownloader {
         return targetDirFile.getRemote();
     }
 
+    /**
+     * Streams the downloaded content to the workspace through a pipe and calculates the checksums on the node while
+     * the file is written, using a single remote call. The content is sent in chunks followed by an end marker, so
+     * the node can tell a complete download from a download that failed midway.
+     */
     public Map<String, String> saveDownloadedFile(InputStream is, String filePath) throws IOException {
         try {
             FilePath child = workspace.child(filePath);
-            child.copyFrom(is);
-            return child.act(new DownloadFileCallable(log));
+            if (!child.isRemote()) {
+                return saveAndCalculateChecksums(is, new File(child.getRemote()), checksumCacheDir,
+                        dependencyCacheDir, dependencyCacheSize);
+            }
+            Pipe pipe = Pipe.createLocalToRemote();
+            Future<Map<String, String>> future = child.actAsync(new DownloadFileCallable(pipe, checksumCacheDir,
+                    dependencyCacheDir, dependencyCacheSize));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(pipe.getOut(), PIPE_CHUNK_SIZE));
+            try {
+                byte[] buffer = new byte[PIPE_CHUNK_SIZE];
+                int read;
+                while ((read = is.read(buffer)) != -1) {
+                    out.writeInt(read);
+                    out.write(buffer, 0, read);
+                }
+                // without the end marker the node discards the file
+                out.writeInt(0);
+            } finally {
+                IOUtils.closeQuietly(out);
+            }
+            return future.get();
         } catch (InterruptedException e) {
             log.warn("Caught interrupted exception: " + e.getLocalizedMessage());
+        } catch (ExecutionException e) {
+            IOException ioe = new IOException("Failed to save the downloaded file " + filePath + ": " +
+                    e.getCause().getMessage());
+            ioe.initCause(e.getCause());
+            throw ioe;
         } finally {
             IOUtils.closeQuietly(is);
         }
@@ -65,20 +289,213 @@ public class DependenciesDownloaderImpl implements DependenciesDownloader {
         return null;
     }
 
+    /**
+     * @param dependencyCacheDir The directory of the dependency cache to add the file to, null if disabled
+     */
+    private static Map<String, String> saveAndCalculateChecksums(InputStream is, File file, String checksumCacheDir,
+            String dependencyCacheDir, long dependencyCacheSize) throws IOException {
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not replace " + file);
+        }
+        ChecksumCalculator.Checksums checksums;
+        try {
+            checksums = ChecksumCalculator.copyWithChecksums(is, file);
+        } catch (IOException e) {
+            // a partial file is neither kept nor cached
+            file.delete();
+            throw e;
+        }
+        if (dependencyCacheDir != null) {
+            DependencyCache.getInstance(new File(dependencyCacheDir), dependencyCacheSize)
+                    .store(file, checksums.getSha1());
+        }
+        ChecksumCache.getInstance(new File(checksumCacheDir)).put(file, checksums);
+        Map<String, String> result = Maps.newHashMap();
+        result.put("md5", checksums.getMd5());
+        result.put("sha1", checksums.getSha1());
+        return result;
+    }
+
     private static class DownloadFileCallable implements FilePath.FileCallable<Map<String, String>> {
-        private Log log;
+        private Pipe pipe;
+        private String checksumCacheDir;
+        private String dependencyCacheDir;
+        private long dependencyCacheSize;
 
-        public DownloadFileCallable(Log log) {
-            this.log = log;
+        public DownloadFileCallable(Pipe pipe, String checksumCacheDir, String dependencyCacheDir,
+                long dependencyCacheSize) {
+            this.pipe = pipe;
+            this.checksumCacheDir = checksumCacheDir;
+            this.dependencyCacheDir = dependencyCacheDir;
+            this.dependencyCacheSize = dependencyCacheSize;
         }
 
         public Map<String, String> invoke(File f, VirtualChannel channel) throws IOException {
+            InputStream in = new ChunkedInputStream(pipe.getIn());
+            try {
+                return saveAndCalculateChecksums(in, f, checksumCacheDir, dependencyCacheDir, dependencyCacheSize);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+        }
+    }
+
+    /**
+     * Reads the chunks written by {@link #saveDownloadedFile}, and fails if the stream ends before the end marker.
+     */
+    private static class ChunkedInputStream extends InputStream {
+        private final DataInputStream in;
+        private int remaining;
+        private boolean done;
+
+        private ChunkedInputStream(InputStream in) {
+            this.in = new DataInputStream(new BufferedInputStream(in, PIPE_CHUNK_SIZE));
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (done) {
+                return -1;
+            }
+            if (remaining == 0) {
+                try {
+                    remaining = in.readInt();
+                } catch (EOFException e) {
+                    throw new IOException("The download ended before the file was complete");
+                }
+                if (remaining == 0) {
+                    done = true;
+                    return -1;
+                }
+            }
+            int read = in.read(b, off, Math.min(len, remaining));
+            if (read == -1) {
+                throw new IOException("The download ended before the file was complete");
+            }
+            remaining -= read;
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Downloads a single artifact with a pooled client, keeping its log lines until the runner writes them.
+     */
+    private class DownloadTask extends ConcurrentTaskRunner.LoggingTask<List<Dependency>> {
+        private final DownloadableArtifact downloadableArtifact;
+
+        private DownloadTask(DownloadableArtifact downloadableArtifact) {
+            this.downloadableArtifact = downloadableArtifact;
+        }
+
+        public List<Dependency> call() throws Exception {
+            ArtifactoryDependenciesClient pooledClient = downloadClients.acquire();
+            try {
+                DependenciesDownloaderImpl downloader = new DependenciesDownloaderImpl(
+                        DependenciesDownloaderImpl.this, pooledClient, getLog());
+                return new DependenciesDownloaderHelper(downloader, getLog())
+                        .downloadDependencies(Sets.newHashSet(downloadableArtifact));
+            } finally {
+                downloadClients.release(pooledClient);
+            }
+        }
+    }
+
+    /**
+     * Reads the checksums of a single artifact, an artifact without checksums is downloaded as usual.
+     */
+    private class ChecksumTask extends ConcurrentTaskRunner.LoggingTask<ChecksumCalculator.Checksums> {
+        private final DownloadableArtifact downloadableArtifact;
+
+        private ChecksumTask(DownloadableArtifact downloadableArtifact) {
+            this.downloadableArtifact = downloadableArtifact;
+        }
+
+        public ChecksumCalculator.Checksums call() throws Exception {
             try {
-                return FileChecksumCalculator.calculateChecksums(f, "md5", "sha1");
-            } catch (NoSuchAlgorithmException e) {
-                log.warn("Could not find checksum algorithm: " + e.getLocalizedMessage());
+                return checksumReader.readChecksums(getArtifactUrl(downloadableArtifact));
+            } catch (IOException e) {
+                log("Could not read the checksums of " + downloadableArtifact.getFilePath() + ": " + e.getMessage());
+                return null;
             }
+        }
+    }
+
+    /**
+     * Compares the existing targets with the remote checksums on the node and places the cached artifacts at their
+     * targets.
+     */
+    private static class ResolveLocallyCallable
+            implements FilePath.FileCallable<Map<String, ChecksumCalculator.Checksums>> {
+        private Map<String, ChecksumCalculator.Checksums> remoteChecksums;
+        private boolean incremental;
+        private String dependencyCacheDir;
+        private long dependencyCacheSize;
+        private String checksumCacheDir;
+
+        public ResolveLocallyCallable(Map<String, ChecksumCalculator.Checksums> remoteChecksums,
+                boolean incremental, String dependencyCacheDir, long dependencyCacheSize, String checksumCacheDir) {
+            this.remoteChecksums = remoteChecksums;
+            this.incremental = incremental;
+            this.dependencyCacheDir = dependencyCacheDir;
+            this.dependencyCacheSize = dependencyCacheSize;
+            this.checksumCacheDir = checksumCacheDir;
+        }
+
+        /**
+         * @return The checksums of the artifacts that are up to date at their targets, keyed by the target path
+         */
+        public Map<String, ChecksumCalculator.Checksums> invoke(File f, VirtualChannel channel) throws IOException {
+            DependencyCache cache = dependencyCacheDir == null ? null :
+                    DependencyCache.getInstance(new File(dependencyCacheDir), dependencyCacheSize);
+            ChecksumCache checksumCache = ChecksumCache.getInstance(new File(checksumCacheDir));
+            Map<String, ChecksumCalculator.Checksums> result = Maps.newHashMap();
+            for (Map.Entry<String, ChecksumCalculator.Checksums> entry : remoteChecksums.entrySet()) {
+                File target = new File(entry.getKey());
+                ChecksumCalculator.Checksums checksums = entry.getValue();
+                if (incremental && target.isFile()) {
+                    ChecksumCalculator.Checksums localChecksums = checksumCache.getChecksums(target);
+                    if (checksums.getSha1().equalsIgnoreCase(localChecksums.getSha1())) {
+                        result.put(entry.getKey(), localChecksums);
+                        continue;
+                    }
+                }
+                if (cache == null || !cache.materialize(checksums.getSha1(), target)) {
+                    continue;
+                }
+                if (StringUtils.isBlank(checksums.getMd5())) {
+                    checksums = checksumCache.getChecksums(target);
+                } else {
+                    checksumCache.put(target, checksums);
+                }
+                result.put(entry.getKey(), checksums);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Writes the checksum cache of the node to disk once all the dependencies are downloaded.
+     */
+    private static class SaveChecksumCacheCallable implements FilePath.FileCallable<Void> {
+        private String checksumCacheDir;
+
+        public SaveChecksumCacheCallable(String checksumCacheDir) {
+            this.checksumCacheDir = checksumCacheDir;
+        }
 
+        public Void invoke(File f, VirtualChannel channel) throws IOException {
+            ChecksumCache.getInstance(new File(checksumCacheDir)).save();
             return null;
         }
     }
@@ -18,15 +18,20 @@ import org.apache.commons.lang.StringUtils;
 import org.jfrog.build.api.Artifact;
 import org.jfrog.build.api.BuildInfoFields;
 import org.jfrog.build.api.builder.ArtifactBuilder;
-import org.jfrog.build.api.util.FileChecksumCalculator;
 import org.jfrog.build.client.ArtifactoryBuildInfoClient;
 import org.jfrog.build.client.DeployDetails;
 import org.jfrog.build.client.ProxyConfiguration;
 import org.jfrog.build.util.PublishedItemsHelper;
 import org.jfrog.hudson.ArtifactoryServer;
 import org.jfrog.hudson.action.ActionableHelper;
+import org.jfrog.hudson.util.ChecksumCache;
+import org.jfrog.hudson.util.ChecksumCalculator;
+import org.jfrog.hudson.util.ChecksumDeployer;
+import org.jfrog.hudson.util.ClientPool;
+import org.jfrog.hudson.util.ConcurrentTaskRunner;
 import org.jfrog.hudson.util.Credentials;
 import org.jfrog.hudson.util.ExtractorUtils;
+import org.jfrog.hudson.util.PluginDependencyHelper;
 
 import java.io.File;
 import java.io.IOException;
@@ -41,9 +46,6 @@ import java.util.Set;
  * @author Shay Yaakov
  */
 public class GenericArtifactsDeployer {
-    private static final String SHA1 = "SHA1";
-    private static final String MD5 = "MD5";
-
     private AbstractBuild build;
     private ArtifactoryGenericConfigurator configurator;
     private BuildListener listener;
@@ -81,7 +83,10 @@ public class GenericArtifactsDeployer {
         ArtifactoryServer artifactoryServer = configurator.getArtifactoryServer();
         artifactsToDeploy = workingDir.act(new FilesDeployerCallable(listener, pairs, artifactoryServer, credentials,
                 configurator.getRepositoryKey(), propertiesToAdd,
-                artifactoryServer.createProxyConfiguration(Hudson.getInstance().proxy)));
+                artifactoryServer.createProxyConfiguration(Hudson.getInstance().proxy),
+                !configurator.isCollectDeploymentErrors(),
+                ChecksumDeployer.isEnabled(artifactoryServer, credentials, listener),
+                PluginDependencyHelper.getChecksumCacheDirectory(workingDir).getRemote()));
     }
 
     private Map<String, String> getbuildPropertiesMap() {
@@ -128,10 +133,14 @@ public class GenericArtifactsDeployer {
         private final String repositoryKey;
         private Map<String, String> buildProperties;
         private ProxyConfiguration proxyConfiguration;
+        private final boolean failFast;
+        private final boolean checksumDeploy;
+        private final String checksumCacheDir;
 
         public FilesDeployerCallable(BuildListener listener, Multimap<String, String> patternPairs,
                 ArtifactoryServer server, Credentials credentials, String repositoryKey,
-                Map<String, String> buildProperties, ProxyConfiguration proxyConfiguration) {
+                Map<String, String> buildProperties, ProxyConfiguration proxyConfiguration, boolean failFast,
+                boolean checksumDeploy, String checksumCacheDir) {
             this.listener = listener;
             this.patternPairs = patternPairs;
             this.server = server;
@@ -139,26 +148,44 @@ public class GenericArtifactsDeployer {
             this.repositoryKey = repositoryKey;
             this.buildProperties = buildProperties;
             this.proxyConfiguration = proxyConfiguration;
+            this.failFast = failFast;
+            this.checksumDeploy = checksumDeploy;
+            this.checksumCacheDir = checksumCacheDir;
         }
 
         public List<Artifact> invoke(File workspace, VirtualChannel channel) throws IOException, InterruptedException {
             Multimap<String, File> targetPathToFilesMap = buildTargetPathToFiles(workspace);
+            ChecksumCache checksumCache = ChecksumCache.getInstance(new File(checksumCacheDir));
+            Map<File, ChecksumCalculator.Checksums> checksums = checksumCache.getChecksums(
+                    Sets.newHashSet(targetPathToFilesMap.values()), ChecksumCalculator.getDefaultThreads());
+            checksumCache.save();
             Set<DeployDetails> artifactsToDeploy = Sets.newHashSet();
             for (Map.Entry<String, File> entry : targetPathToFilesMap.entries()) {
-                artifactsToDeploy.addAll(buildDeployDetailsFromFileEntry(entry));
+                artifactsToDeploy.addAll(buildDeployDetailsFromFileEntry(entry, checksums.get(entry.getValue())));
             }
 
-            ArtifactoryBuildInfoClient client = server.createArtifactoryClient(credentials.getUsername(),
-                    credentials.getPassword(), proxyConfiguration);
+            ClientPool<ArtifactoryBuildInfoClient> clients =
+                    new ClientPool<ArtifactoryBuildInfoClient>(server.getDeploymentThreads()) {
+                        @Override
+                        protected ArtifactoryBuildInfoClient createClient() {
+                            return server.createArtifactoryClient(credentials.getUsername(),
+                                    credentials.getPassword(), proxyConfiguration);
+                        }
+
+                        @Override
+                        protected void shutdownClient(ArtifactoryBuildInfoClient client) {
+                            client.shutdown();
+                        }
+                    };
             try {
-                deploy(client, artifactsToDeploy);
-                return convertDeployDetailsToArtifacts(artifactsToDeploy);
+                List<DeployDetails> deployedDetails = deploy(clients, artifactsToDeploy);
+                return convertDeployDetailsToArtifacts(deployedDetails);
             } finally {
-                client.shutdown();
+                clients.shutdown();
             }
         }
 
-        private List<Artifact> convertDeployDetailsToArtifacts(Set<DeployDetails> details) {
+        private List<Artifact> convertDeployDetailsToArtifacts(List<DeployDetails> details) {
             List<Artifact> result = Lists.newArrayList();
             for (DeployDetails detail : details) {
                 String ext = FilenameUtils.getExtension(detail.getFile().getName());
@@ -169,8 +196,20 @@ public class GenericArtifactsDeployer {
             return result;
         }
 
-        public void deploy(ArtifactoryBuildInfoClient client, Set<DeployDetails> artifactsToDeploy)
-                throws IOException {
+        /**
+         * Deploys the artifacts over a pool of {@link ArtifactoryServer#getDeploymentThreads()} workers, each using a
+         * client of its own.
+         *
+         * @return The details of the deployed artifacts
+         */
+        public List<DeployDetails> deploy(ClientPool<ArtifactoryBuildInfoClient> clients,
+                Set<DeployDetails> artifactsToDeploy) throws IOException, InterruptedException {
+            ChecksumDeployer checksumDeployer = null;
+            if (checksumDeploy) {
+                checksumDeployer = new ChecksumDeployer(server, credentials.getUsername(), credentials.getPassword(),
+                        proxyConfiguration);
+            }
+            List<DeployTask> tasks = Lists.newArrayList();
             for (DeployDetails deployDetail : artifactsToDeploy) {
                 StringBuilder deploymentPathBuilder = new StringBuilder(server.getUrl());
                 deploymentPathBuilder.append("/").append(repositoryKey);
@@ -178,9 +217,12 @@ public class GenericArtifactsDeployer {
                     deploymentPathBuilder.append("/");
                 }
                 deploymentPathBuilder.append(deployDetail.getArtifactPath());
-                listener.getLogger().println("Deploying artifact: " + deploymentPathBuilder.toString());
-                client.deployArtifact(deployDetail);
+                tasks.add(new DeployTask(clients, checksumDeployer, deployDetail, buildProperties,
+                        deploymentPathBuilder.toString()));
             }
+            ConcurrentTaskRunner runner = new ConcurrentTaskRunner("artifactory-deployer",
+                    server.getDeploymentThreads(), failFast, listener.getLogger());
+            return runner.run(tasks);
         }
 
         private Multimap<String, File> buildTargetPathToFiles(File workspace) throws IOException {
@@ -202,30 +244,55 @@ public class GenericArtifactsDeployer {
             return result;
         }
 
-        private Set<DeployDetails> buildDeployDetailsFromFileEntry(Map.Entry<String, File> fileEntry)
-                throws IOException {
+        private Set<DeployDetails> buildDeployDetailsFromFileEntry(Map.Entry<String, File> fileEntry,
+                ChecksumCalculator.Checksums checksums) {
             Set<DeployDetails> result = Sets.newHashSet();
             String targetPath = fileEntry.getKey();
             File artifactFile = fileEntry.getValue();
             String path = PublishedItemsHelper.calculateTargetPath(targetPath, artifactFile);
             path = StringUtils.replace(path, "//", "/");
 
-            // calculate the sha1 checksum that is not given by Jenkins and add it to the deploy artifactsToDeploy
-            Map<String, String> checksums = Maps.newHashMap();
-            try {
-                checksums = FileChecksumCalculator.calculateChecksums(artifactFile, SHA1, MD5);
-            } catch (NoSuchAlgorithmException e) {
-                listener.getLogger().println("Could not find checksum algorithm for " + SHA1 + " or " + MD5);
-            }
             DeployDetails.Builder builder = new DeployDetails.Builder()
                     .file(artifactFile)
                     .artifactPath(path)
                     .targetRepository(repositoryKey)
-                    .md5(checksums.get(MD5)).sha1(checksums.get(SHA1))
+                    .md5(checksums.getMd5()).sha1(checksums.getSha1())
                     .addProperties(buildProperties);
             result.add(builder.build());
 
             return result;
         }
     }
+
+    private static class DeployTask extends ConcurrentTaskRunner.LoggingTask<DeployDetails> {
+        private final ClientPool<ArtifactoryBuildInfoClient> clients;
+        private final ChecksumDeployer checksumDeployer;
+        private final DeployDetails deployDetails;
+        private final Map<String, String> properties;
+        private final String deploymentPath;
+
+        private DeployTask(ClientPool<ArtifactoryBuildInfoClient> clients, ChecksumDeployer checksumDeployer,
+                DeployDetails deployDetails, Map<String, String> properties, String deploymentPath) {
+            this.clients = clients;
+            this.checksumDeployer = checksumDeployer;
+            this.deployDetails = deployDetails;
+            this.properties = properties;
+            this.deploymentPath = deploymentPath;
+        }
+
+        public DeployDetails call() throws Exception {
+            if (checksumDeployer != null && checksumDeployer.tryChecksumDeploy(deployDetails, properties)) {
+                log("Deployed artifact by checksum: " + deploymentPath);
+                return deployDetails;
+            }
+            log("Deploying artifact: " + deploymentPath);
+            ArtifactoryBuildInfoClient client = clients.acquire();
+            try {
+                client.deployArtifact(deployDetails);
+            } finally {
+                clients.release(client);
+            }
+            return deployDetails;
+        }
+    }
 }
@@ -16,16 +16,22 @@
 
 package org.jfrog.hudson.generic;
 
+import com.google.common.collect.Lists;
 import hudson.model.AbstractBuild;
 import hudson.model.BuildListener;
 import org.jfrog.build.api.Dependency;
 import org.jfrog.build.api.dependency.UserBuildDependency;
 import org.jfrog.build.api.util.Log;
 import org.jfrog.build.client.ArtifactoryDependenciesClient;
+import org.jfrog.build.client.ProxyConfiguration;
 import org.jfrog.build.util.BuildDependenciesHelper;
-import org.jfrog.build.util.DependenciesDownloader;
 import org.jfrog.build.util.DependenciesHelper;
-import org.jfrog.hudson.util.JenkinsBuildInfoLog;
+import org.jfrog.hudson.ArtifactoryServer;
+import org.jfrog.hudson.util.ClientPool;
+import org.jfrog.hudson.util.ConcurrentTaskRunner;
+import org.jfrog.hudson.util.Credentials;
+import org.jfrog.hudson.util.HttpConnectionFactory;
+import org.jfrog.hudson.util.RemoteChecksumReader;
 
 import java.io.IOException;
 import java.util.List;
@@ -33,34 +39,140 @@ import java.util.List;
 /**
  * Resolves artifacts from Artifactory (published dependencies and build dependencies)
  * This class is used only in free style generic configurator.
+ * <p/>
+ * When the server allows more than one resolution thread, both kinds of dependencies are resolved at the same time
+ * and the files are downloaded concurrently. All the downloads of a resolution share a pool of clients sized by the
+ * server, which bounds the number of concurrent requests.
+ * <p/>
+ * In incremental mode, dependencies that already exist in the workspace with the checksum reported by Artifactory are
+ * not downloaded again.
  *
  * @author Shay Yaakov
  */
 public class GenericArtifactsResolver {
     private final AbstractBuild build;
-    private final ArtifactoryDependenciesClient client;
+    private final BuildListener listener;
+    private final ArtifactoryServer server;
+    private final Credentials credentials;
+    private final ProxyConfiguration proxyConfiguration;
     private String resolvePattern;
-    private Log log;
+    private final boolean incremental;
 
-    public GenericArtifactsResolver(AbstractBuild build, BuildListener listener, ArtifactoryDependenciesClient client,
-            String resolvePattern) {
+    private List<Dependency> publishedDependencies = Lists.newArrayList();
+    private List<UserBuildDependency> buildDependencies = Lists.newArrayList();
+
+    public GenericArtifactsResolver(AbstractBuild build, BuildListener listener, ArtifactoryServer server,
+            Credentials credentials, ProxyConfiguration proxyConfiguration, String resolvePattern,
+            boolean incremental) {
         this.build = build;
-        this.client = client;
+        this.listener = listener;
+        this.server = server;
+        this.credentials = credentials;
+        this.proxyConfiguration = proxyConfiguration;
         this.resolvePattern = resolvePattern;
-        log = new JenkinsBuildInfoLog(listener);
+        this.incremental = incremental;
+    }
+
+    /**
+     * Resolves the published dependencies and the build dependencies of the resolve pattern.
+     */
+    public void resolve() throws IOException, InterruptedException {
+        final int threads = server.getResolutionThreads();
+        final ClientPool<ArtifactoryDependenciesClient> downloadClients = threads > 1 ? createClientPool(threads) : null;
+        try {
+            List<ConcurrentTaskRunner.LoggingTask<Void>> phases = Lists.newArrayList();
+            phases.add(new ConcurrentTaskRunner.LoggingTask<Void>() {
+                public Void call() throws Exception {
+                    publishedDependencies = retrievePublishedDependencies(downloadClients, threads, getLog());
+                    return null;
+                }
+            });
+            phases.add(new ConcurrentTaskRunner.LoggingTask<Void>() {
+                public Void call() throws Exception {
+                    buildDependencies = retrieveBuildDependencies(downloadClients, threads, getLog());
+                    return null;
+                }
+            });
+            new ConcurrentTaskRunner("artifactory-resolver", threads > 1 ? phases.size() : 1, true,
+                    listener.getLogger()).run(phases);
+        } finally {
+            if (downloadClients != null) {
+                downloadClients.shutdown();
+            }
+        }
+    }
+
+    public List<Dependency> getPublishedDependencies() {
+        return publishedDependencies;
+    }
+
+    public List<UserBuildDependency> getBuildDependencies() {
+        return buildDependencies;
+    }
+
+    /**
+     * @param log The log of the resolution phase, which is written once the phase is done
+     */
+    private List<Dependency> retrievePublishedDependencies(ClientPool<ArtifactoryDependenciesClient> downloadClients,
+            int threads, Log log) throws IOException, InterruptedException {
+        ArtifactoryDependenciesClient client = createClient();
+        try {
+            DependenciesHelper helper = new DependenciesHelper(
+                    createDependenciesDownloader(client, downloadClients, threads, log), log);
+            return helper.retrievePublishedDependencies(resolvePattern);
+        } finally {
+            client.shutdown();
+        }
     }
 
-    public List<Dependency> retrievePublishedDependencies() throws IOException, InterruptedException {
-        DependenciesHelper helper = new DependenciesHelper(createDependenciesDownloader(), log);
-        return helper.retrievePublishedDependencies(resolvePattern);
+    private List<UserBuildDependency> retrieveBuildDependencies(
+            ClientPool<ArtifactoryDependenciesClient> downloadClients, int threads, Log log)
+            throws IOException, InterruptedException {
+        ArtifactoryDependenciesClient client = createClient();
+        try {
+            BuildDependenciesHelper helper = new BuildDependenciesHelper(
+                    createDependenciesDownloader(client, downloadClients, threads, log), log);
+            return helper.retrieveBuildDependencies(resolvePattern);
+        } finally {
+            client.shutdown();
+        }
     }
 
-    public List<UserBuildDependency> retrieveBuildDependencies() throws IOException, InterruptedException {
-        BuildDependenciesHelper helper = new BuildDependenciesHelper(createDependenciesDownloader(), log);
-        return helper.retrieveBuildDependencies(resolvePattern);
+    private DependenciesDownloaderImpl createDependenciesDownloader(ArtifactoryDependenciesClient client,
+            ClientPool<ArtifactoryDependenciesClient> downloadClients, int threads, Log log) {
+        DependenciesDownloaderImpl downloader = new DependenciesDownloaderImpl(client, build.getWorkspace(), log,
+                downloadClients, threads);
+        if (incremental || server.getDependencyCacheSize() > 0) {
+            HttpConnectionFactory connectionFactory = new HttpConnectionFactory(server, credentials.getUsername(),
+                    credentials.getPassword(), proxyConfiguration);
+            downloader.setChecksumReader(new RemoteChecksumReader(connectionFactory));
+            downloader.setIncremental(incremental);
+            if (server.getDependencyCacheSize() > 0) {
+                downloader.setDependencyCacheSize(server.getDependencyCacheSize() * 1024L * 1024L);
+            }
+        }
+        return downloader;
     }
 
-    private DependenciesDownloader createDependenciesDownloader() {
-        return new DependenciesDownloaderImpl(client, build.getWorkspace(), log);
+    /**
+     * Each resolution phase uses a client of its own for searching, the downloads share the pooled clients.
+     */
+    private ArtifactoryDependenciesClient createClient() {
+        return server.createArtifactoryDependenciesClient(credentials.getUsername(), credentials.getPassword(),
+                proxyConfiguration, listener);
+    }
+
+    private ClientPool<ArtifactoryDependenciesClient> createClientPool(int size) {
+        return new ClientPool<ArtifactoryDependenciesClient>(size) {
+            @Override
+            protected ArtifactoryDependenciesClient createClient() {
+                return GenericArtifactsResolver.this.createClient();
+            }
+
+            @Override
+            protected void shutdownClient(ArtifactoryDependenciesClient client) {
+                client.shutdown();
+            }
+        };
     }
 }
@@ -30,6 +30,7 @@ import org.jfrog.build.api.dependency.BuildDependency;
 import org.jfrog.build.api.dependency.UserBuildDependency;
 import org.jfrog.build.client.ArtifactoryBuildInfoClient;
 import org.jfrog.hudson.AbstractBuildInfoDeployer;
+import org.jfrog.hudson.util.Credentials;
 import org.jfrog.hudson.util.ExtractorUtils;
 
 import java.io.IOException;
@@ -47,26 +48,26 @@ import static com.google.common.collect.Sets.newHashSet;
  */
 public class GenericBuildInfoDeployer extends AbstractBuildInfoDeployer {
 
-    private ArtifactoryGenericConfigurator configurator;
     private final AbstractBuild build;
     private Build buildInfo;
 
     public GenericBuildInfoDeployer(ArtifactoryGenericConfigurator configurator, ArtifactoryBuildInfoClient client,
-            AbstractBuild build, BuildListener listener, List<Artifact> deployedArtifacts,
-            List<UserBuildDependency> buildDependencies, List<Dependency> publishedDependencies)
+            AbstractBuild build, BuildListener listener, Credentials deployerCredentials,
+            List<Artifact> deployedArtifacts, List<UserBuildDependency> buildDependencies,
+            List<Dependency> publishedDependencies)
             throws IOException, NoSuchAlgorithmException, InterruptedException {
-        super(configurator, build, listener, client);
-        this.configurator = configurator;
+        super(configurator, build, listener, client, deployerCredentials);
         this.build = build;
         this.buildInfo = createBuildInfo("Generic", "Generic", BuildType.GENERIC);
         createDeployDetailsAndAddToBuildInfo(deployedArtifacts, publishedDependencies);
         addBuildDependencies(buildDependencies);
     }
 
+    /**
+     * Deploys the build info, and adds the result action to the build.
+     */
     public void deploy() throws IOException {
-        String url = configurator.getArtifactoryServer().getUrl() + "/api/build";
-        listener.getLogger().println("Deploying build info to: " + url);
-        client.sendBuildInfo(buildInfo);
+        deployBuildInfo(buildInfo);
     }
 
     private void addBuildDependencies(List<UserBuildDependency> buildDependencies) {
@@ -16,6 +16,8 @@
 
 package org.jfrog.hudson.maven2;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import hudson.EnvVars;
 import hudson.Util;
 import hudson.maven.MavenBuild;
@@ -28,24 +30,34 @@ import hudson.util.VersionNumber;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.builder.ToStringBuilder;
 import org.jfrog.build.api.BuildInfoFields;
-import org.jfrog.build.api.util.FileChecksumCalculator;
 import org.jfrog.build.client.ArtifactoryBuildInfoClient;
 import org.jfrog.build.client.DeployDetails;
 import org.jfrog.build.client.IncludeExcludePatterns;
 import org.jfrog.build.client.PatternMatcher;
+import org.jfrog.build.client.ProxyConfiguration;
 import org.jfrog.hudson.ArtifactoryRedeployPublisher;
 import org.jfrog.hudson.ArtifactoryServer;
+import org.jfrog.hudson.DeployerOverrider;
 import org.jfrog.hudson.action.ActionableHelper;
 import org.jfrog.hudson.release.ReleaseAction;
 import org.jfrog.hudson.util.BuildUniqueIdentifierHelper;
+import org.jfrog.hudson.util.ChecksumCache;
+import org.jfrog.hudson.util.ChecksumCalculator;
+import org.jfrog.hudson.util.ChecksumDeployer;
+import org.jfrog.hudson.util.ClientPool;
+import org.jfrog.hudson.util.ConcurrentTaskRunner;
+import org.jfrog.hudson.util.CredentialResolver;
+import org.jfrog.hudson.util.Credentials;
 import org.jfrog.hudson.util.ExtractorUtils;
 import org.jfrog.hudson.util.IncludesExcludes;
 import org.jfrog.hudson.util.MavenVersionHelper;
+import org.jfrog.hudson.util.PluginDependencyHelper;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -57,7 +69,6 @@ import java.util.logging.Logger;
 public class ArtifactsDeployer {
     private static Logger debuggingLogger = Logger.getLogger(ArtifactsDeployer.class.getName());
     private static final String HIGHEST_VERSION_BEFORE_ARCHIVE_FIX = "1.404";
-    private static final String SHA1 = "SHA1";
 
     private final ArtifactoryServer artifactoryServer;
     private final String targetReleasesRepository;
@@ -70,7 +81,9 @@ public class ArtifactsDeployer {
     private final boolean isArchiveJenkinsVersion;
     private final EnvVars env;
     private final String[] matrixParams;
-    private final AbstractBuild<?, ?> rootBuild;
+    private final String rootBuildIdentifier;
+    private final DeployerOverrider deployerOverrider;
+    private final ChecksumCache checksumCache;
 
     public ArtifactsDeployer(ArtifactoryRedeployPublisher artifactoryPublisher, ArtifactoryBuildInfoClient client,
                              MavenModuleSetBuild mavenModuleSetBuild, BuildListener listener) throws IOException, InterruptedException {
@@ -79,6 +92,8 @@ public class ArtifactsDeployer {
         this.listener = listener;
         this.env = mavenModuleSetBuild.getEnvironment(listener);
         this.artifactoryServer = artifactoryPublisher.getArtifactoryServer();
+        this.deployerOverrider = artifactoryPublisher;
+        this.checksumCache = ChecksumCache.getInstance(PluginDependencyHelper.getMasterChecksumCacheDirectory());
         // release action might change the target releases repository
         ReleaseAction releaseAction = ActionableHelper.getLatestAction(mavenModuleSetBuild, ReleaseAction.class);
         if (releaseAction != null) {
@@ -100,7 +115,7 @@ public class ArtifactsDeployer {
         }
         this.matrixParams = StringUtils.split(artifactoryPublisher.getMatrixParams(), "; ");
         debuggingLogger.fine("Getting root build");
-        this.rootBuild = BuildUniqueIdentifierHelper.getRootBuild(mavenModuleSetBuild);
+        this.rootBuildIdentifier = BuildUniqueIdentifierHelper.getRootBuildIdentifier(mavenModuleSetBuild);
         this.isArchiveJenkinsVersion = Hudson.getVersion().isNewerThan(new VersionNumber(
                 HIGHEST_VERSION_BEFORE_ARCHIVE_FIX));
     }
@@ -109,6 +124,9 @@ public class ArtifactsDeployer {
         listener.getLogger().println("Deploying artifacts to " + artifactoryServer.getUrl());
         Map<MavenModule, MavenBuild> mavenBuildMap = mavenModuleSetBuild.getModuleLastBuilds();
 
+        ClientPool<ArtifactoryBuildInfoClient> clients = createClientPool();
+        ChecksumDeployer checksumDeployer = createChecksumDeployer();
+        List<ArtifactDeployTask> tasks = Lists.newArrayList();
         for (Map.Entry<MavenModule, MavenBuild> mavenBuildEntry : mavenBuildMap.entrySet()) {
             MavenBuild mavenBuild = mavenBuildEntry.getValue();
             Result result = mavenBuild.getResult();
@@ -118,25 +136,73 @@ public class ArtifactsDeployer {
                         "Module: '" + mavenBuildEntry.getKey().getName() + "' wasn't built. Skipping.");
                 continue;
             }
-            listener.getLogger().println("Deploying artifacts of module: " + mavenBuildEntry.getKey().getName());
+            String moduleHeader = "Deploying artifacts of module: " + mavenBuildEntry.getKey().getName();
             MavenArtifactRecord mar = ActionableHelper.getLatestMavenArtifactRecord(mavenBuild);
             MavenArtifact mavenArtifact = mar.mainArtifact;
 
             // deploy main artifact
-            debuggingLogger.fine("Deploying main artifact: " + artifactToString(mavenArtifact, mavenBuild));
-            deployArtifact(mavenBuild, mavenArtifact);
+            tasks.add(new ArtifactDeployTask(clients, checksumDeployer, moduleHeader, "main", mavenBuild, mavenArtifact));
             if (!mar.isPOM() && mar.pomArtifact != null && mar.pomArtifact != mar.mainArtifact) {
                 // deploy the pom if the main artifact is not the pom
-                debuggingLogger.fine("Deploying pom artifact: " + artifactToString(mavenArtifact, mavenBuild));
-                deployArtifact(mavenBuild, mar.pomArtifact);
+                tasks.add(new ArtifactDeployTask(clients, checksumDeployer, null, "pom", mavenBuild, mar.pomArtifact));
             }
 
             // deploy attached artifacts
             for (MavenArtifact attachedArtifact : mar.attachedArtifacts) {
-                debuggingLogger.fine("Deploying attached artifact: " + artifactToString(mavenArtifact, mavenBuild));
-                deployArtifact(mavenBuild, attachedArtifact);
+                tasks.add(new ArtifactDeployTask(clients, checksumDeployer, null, "attached", mavenBuild, attachedArtifact));
             }
         }
+
+        try {
+            new ConcurrentTaskRunner("artifactory-maven-deployer", artifactoryServer.getDeploymentThreads(), true,
+                    listener.getLogger()).run(tasks);
+        } finally {
+            clients.shutdown();
+            checksumCache.save();
+        }
+    }
+
+    /**
+     * Creates the pool of clients used by the deployment workers. The client of the publisher is the first client of
+     * the pool and is left for the publisher to shut down.
+     */
+    private ClientPool<ArtifactoryBuildInfoClient> createClientPool() {
+        final Credentials preferredDeployer = CredentialResolver.getPreferredDeployer(deployerOverrider,
+                artifactoryServer);
+        final ProxyConfiguration proxyConfiguration =
+                artifactoryServer.createProxyConfiguration(Hudson.getInstance().proxy);
+        return new ClientPool<ArtifactoryBuildInfoClient>(artifactoryServer.getDeploymentThreads()) {
+            private boolean sharedClientUsed;
+
+            @Override
+            protected ArtifactoryBuildInfoClient createClient() {
+                if (!sharedClientUsed) {
+                    sharedClientUsed = true;
+                    return client;
+                }
+                return artifactoryServer.createArtifactoryClient(preferredDeployer.getUsername(),
+                        preferredDeployer.getPassword(), proxyConfiguration);
+            }
+
+            @Override
+            protected void shutdownClient(ArtifactoryBuildInfoClient pooledClient) {
+                if (pooledClient != client) {
+                    pooledClient.shutdown();
+                }
+            }
+        };
+    }
+
+    /**
+     * @return A checksum deployer if the server is configured to deploy by checksum and supports it, null otherwise
+     */
+    private ChecksumDeployer createChecksumDeployer() {
+        Credentials preferredDeployer = CredentialResolver.getPreferredDeployer(deployerOverrider, artifactoryServer);
+        if (!ChecksumDeployer.isEnabled(artifactoryServer, preferredDeployer, listener)) {
+            return null;
+        }
+        return new ChecksumDeployer(artifactoryServer, preferredDeployer.getUsername(),
+                preferredDeployer.getPassword(), artifactoryServer.createProxyConfiguration(Hudson.getInstance().proxy));
     }
 
     private String artifactToString(MavenArtifact mavenArtifact, MavenBuild mavenBuild) throws IOException {
@@ -145,49 +211,48 @@ public class ArtifactsDeployer {
                 .toString();
     }
 
-    private void deployArtifact(MavenBuild mavenBuild, MavenArtifact mavenArtifact)
-            throws IOException, InterruptedException, NoSuchAlgorithmException {
-        String artifactPath = buildArtifactPath(mavenArtifact);
-
-        if (PatternMatcher.pathConflicts(artifactPath, patterns)) {
-            listener.getLogger().println("Skipping the deployment of '" + artifactPath +
-                    "' due to the defined include-exclude patterns.");
-            return;
-        }
-
+    private DeployDetails createDeployDetails(MavenBuild mavenBuild, MavenArtifact mavenArtifact, String artifactPath,
+            Map<String, String> properties) throws IOException {
         File artifactFile = getArtifactFile(mavenBuild, mavenArtifact);
         // calculate the sha1 checksum that is not given by Jenkins and add it to the deploy details
-        Map<String, String> checksums = FileChecksumCalculator.calculateChecksums(artifactFile, SHA1);
+        ChecksumCalculator.Checksums checksums = checksumCache.getChecksums(artifactFile);
+        String md5 = StringUtils.isNotBlank(mavenArtifact.md5sum) ? mavenArtifact.md5sum : checksums.getMd5();
         DeployDetails.Builder builder = new DeployDetails.Builder()
                 .file(artifactFile)
                 .artifactPath(artifactPath)
                 .targetRepository(getTargetRepository(mavenArtifact.version))
-                .md5(mavenArtifact.md5sum).sha1(checksums.get(SHA1))
-                .addProperty("build.name", ExtractorUtils.sanitizeBuildName(mavenModuleSetBuild.getParent().getFullName()))
-                .addProperty("build.number", mavenModuleSetBuild.getNumber() + "")
-                .addProperty("build.timestamp", mavenBuild.getTimestamp().getTime().getTime() + "");
+                .md5(md5).sha1(checksums.getSha1())
+                .addProperties(properties);
+        return builder.build();
+    }
+
+    /**
+     * @return The properties to attach to the deployed artifacts of the given module build
+     */
+    private Map<String, String> createDeployProperties(MavenBuild mavenBuild) {
+        Map<String, String> properties = Maps.newLinkedHashMap();
+        properties.put("build.name", ExtractorUtils.sanitizeBuildName(mavenModuleSetBuild.getParent().getFullName()));
+        properties.put("build.number", mavenModuleSetBuild.getNumber() + "");
+        properties.put("build.timestamp", mavenBuild.getTimestamp().getTime().getTime() + "");
 
-        String identifier = BuildUniqueIdentifierHelper.getUpstreamIdentifier(rootBuild);
-        if (StringUtils.isNotBlank(identifier)) {
-            builder.addProperty(BuildInfoFields.BUILD_ROOT, identifier);
+        if (StringUtils.isNotBlank(rootBuildIdentifier)) {
+            properties.put(BuildInfoFields.BUILD_ROOT, rootBuildIdentifier);
         }
 
         Cause.UpstreamCause parent = ActionableHelper.getUpstreamCause(mavenModuleSetBuild);
         if (parent != null) {
-            builder.addProperty("build.parentName", ExtractorUtils.sanitizeBuildName(parent.getUpstreamProject()))
-                    .addProperty("build.parentNumber", parent.getUpstreamBuild() + "");
+            properties.put("build.parentName", ExtractorUtils.sanitizeBuildName(parent.getUpstreamProject()));
+            properties.put("build.parentNumber", parent.getUpstreamBuild() + "");
         }
         String revision = ExtractorUtils.getVcsRevision(env);
         if (StringUtils.isNotBlank(revision)) {
-            builder.addProperty(BuildInfoFields.VCS_REVISION, revision);
+            properties.put(BuildInfoFields.VCS_REVISION, revision);
         }
-        addMatrixParams(builder);
-        DeployDetails deployDetails = builder.build();
-        logDeploymentPath(deployDetails, artifactPath);
-        client.deployArtifact(deployDetails);
+        addMatrixParams(properties);
+        return properties;
     }
 
-    private void addMatrixParams(DeployDetails.Builder builder) {
+    private void addMatrixParams(Map<String, String> properties) {
         if (matrixParams == null) {
             return;
         }
@@ -195,15 +260,13 @@ public class ArtifactsDeployer {
             String[] split = StringUtils.split(matrixParam, '=');
             if (split.length == 2) {
                 String value = Util.replaceMacro(split[1], env);
-                builder.addProperty(split[0], value);
+                properties.put(split[0], value);
             }
         }
     }
 
-    private void logDeploymentPath(DeployDetails deployDetails, String artifactPath) {
-        String deploymentPath =
-                artifactoryServer.getUrl() + "/" + deployDetails.getTargetRepository() + "/" + artifactPath;
-        listener.getLogger().println("Deploying artifact: " + deploymentPath);
+    private String getDeploymentPath(DeployDetails deployDetails, String artifactPath) {
+        return artifactoryServer.getUrl() + "/" + deployDetails.getTargetRepository() + "/" + artifactPath;
     }
 
     /**
@@ -252,4 +315,55 @@ public class ArtifactsDeployer {
             throw new RuntimeException("Unable to determine Maven version", e);
         }
     }
+
+    /**
+     * Deploys a single artifact of a module. The first task of every module also logs the module header.
+     */
+    private class ArtifactDeployTask extends ConcurrentTaskRunner.LoggingTask<Void> {
+        private final ClientPool<ArtifactoryBuildInfoClient> clients;
+        private final ChecksumDeployer checksumDeployer;
+        private final String moduleHeader;
+        private final String artifactKind;
+        private final MavenBuild mavenBuild;
+        private final MavenArtifact mavenArtifact;
+
+        private ArtifactDeployTask(ClientPool<ArtifactoryBuildInfoClient> clients, ChecksumDeployer checksumDeployer,
+                String moduleHeader, String artifactKind, MavenBuild mavenBuild, MavenArtifact mavenArtifact) {
+            this.clients = clients;
+            this.checksumDeployer = checksumDeployer;
+            this.moduleHeader = moduleHeader;
+            this.artifactKind = artifactKind;
+            this.mavenBuild = mavenBuild;
+            this.mavenArtifact = mavenArtifact;
+        }
+
+        public Void call() throws Exception {
+            if (moduleHeader != null) {
+                log(moduleHeader);
+            }
+            debuggingLogger.fine("Deploying " + artifactKind + " artifact: " +
+                    artifactToString(mavenArtifact, mavenBuild));
+            String artifactPath = buildArtifactPath(mavenArtifact);
+            if (PatternMatcher.pathConflicts(artifactPath, patterns)) {
+                log("Skipping the deployment of '" + artifactPath +
+                        "' due to the defined include-exclude patterns.");
+                return null;
+            }
+
+            Map<String, String> properties = createDeployProperties(mavenBuild);
+            DeployDetails deployDetails = createDeployDetails(mavenBuild, mavenArtifact, artifactPath, properties);
+            if (checksumDeployer != null && checksumDeployer.tryChecksumDeploy(deployDetails, properties)) {
+                log("Deployed artifact by checksum: " + getDeploymentPath(deployDetails, artifactPath));
+                return null;
+            }
+            log("Deploying artifact: " + getDeploymentPath(deployDetails, artifactPath));
+            ArtifactoryBuildInfoClient pooledClient = clients.acquire();
+            try {
+                pooledClient.deployArtifact(deployDetails);
+            } finally {
+                clients.release(pooledClient);
+            }
+            return null;
+        }
+    }
 }
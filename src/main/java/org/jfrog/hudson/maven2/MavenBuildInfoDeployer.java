@@ -38,6 +38,7 @@ import org.jfrog.hudson.BuildInfoAwareConfigurator;
 import org.jfrog.hudson.MavenDependenciesRecord;
 import org.jfrog.hudson.MavenDependency;
 import org.jfrog.hudson.action.ActionableHelper;
+import org.jfrog.hudson.util.Credentials;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -53,20 +54,20 @@ import java.util.Set;
 public class MavenBuildInfoDeployer extends AbstractBuildInfoDeployer {
 
     private final Build buildInfo;
-    private BuildInfoAwareConfigurator configurator;
 
     public MavenBuildInfoDeployer(BuildInfoAwareConfigurator configurator, ArtifactoryBuildInfoClient client,
-            MavenModuleSetBuild build, BuildListener listener) throws IOException, InterruptedException {
-        super(configurator, build, listener, client);
-        this.configurator = configurator;
+            MavenModuleSetBuild build, BuildListener listener, Credentials deployerCredentials)
+            throws IOException, InterruptedException {
+        super(configurator, build, listener, client, deployerCredentials);
         buildInfo = createBuildInfo("Maven", build.getParent().getMaven().getName(), BuildType.MAVEN);
         gatherModuleAndDependencyInfo(build);
     }
 
+    /**
+     * Deploys the build info, and adds the result action to the build.
+     */
     public void deploy() throws IOException {
-        String url = configurator.getArtifactoryServer().getUrl() + "/api/build";
-        listener.getLogger().println("Deploying build info to: " + url);
-        client.sendBuildInfo(buildInfo);
+        deployBuildInfo(buildInfo);
     }
 
     private void gatherModuleAndDependencyInfo(MavenModuleSetBuild mavenModulesBuild) {
@@ -250,7 +250,7 @@ public abstract class PromoteBuildAction extends TaskAction implements BuildBadg
                 long started = System.currentTimeMillis();
                 listener.getLogger().println("Promoting build ....");
 
-                client = artifactoryServer.createArtifactoryClient(deployer.getUsername(), deployer.getPassword(),
+                client = artifactoryServer.acquireArtifactoryClient(deployer.getUsername(), deployer.getPassword(),
                         artifactoryServer.createProxyConfiguration(Hudson.getInstance().proxy));
 
                 if ((promotionPlugin != null) &&
@@ -272,9 +272,7 @@ public abstract class PromoteBuildAction extends TaskAction implements BuildBadg
             } catch (Throwable e) {
                 e.printStackTrace(listener.error(e.getMessage()));
             } finally {
-                if (client != null) {
-                    client.shutdown();
-                }
+                artifactoryServer.releaseArtifactoryClient(client);
             }
         }
 
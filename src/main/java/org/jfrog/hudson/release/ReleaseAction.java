@@ -17,7 +17,6 @@
 package org.jfrog.hudson.release;
 
 import com.google.common.collect.Maps;
-import hudson.Util;
 import hudson.model.AbstractProject;
 import hudson.model.Action;
 import hudson.model.BuildableItemWithBuildWrappers;
@@ -36,6 +35,7 @@ import org.kohsuke.stapler.StaplerRequest;
 import org.kohsuke.stapler.StaplerResponse;
 
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
@@ -123,16 +123,23 @@ public abstract class ReleaseAction<P extends AbstractProject & BuildableItemWit
         PluginSettings selectedStagingPluginSettings = getSelectedStagingPlugin();
         if ((selectedStagingPluginSettings != null) &&
                 !UserPluginInfo.NO_PLUGIN_KEY.equals(selectedStagingPluginSettings.getPluginName())) {
-            try {
-                stagingStrategy = getArtifactoryServer().getStagingStrategy(selectedStagingPluginSettings,
-                        Util.rawEncode(project.getName()));
-            } catch (Exception e) {
-                log.log(Level.WARNING, "Failed to obtain staging strategy: " + e.getMessage(), e);
+            if (getArtifactoryServer().isUserPluginsSupported()) {
+                try {
+                    stagingStrategy = StagingStrategyCache.getStagingStrategy(project, getArtifactoryServer(),
+                            selectedStagingPluginSettings);
+                } catch (Exception e) {
+                    log.log(Level.WARNING, "Failed to obtain staging strategy: " + e.getMessage(), e);
+                    strategyRequestFailed = true;
+                    strategyRequestErrorMessage = "Failed to obtain staging strategy '" +
+                            selectedStagingPluginSettings.getPluginName() + "': " + e.getMessage() +
+                            ".\nPlease review the log for further information.";
+                    stagingStrategy = null;
+                }
+            } else {
                 strategyRequestFailed = true;
                 strategyRequestErrorMessage = "Failed to obtain staging strategy '" +
-                        selectedStagingPluginSettings.getPluginName() + "': " + e.getMessage() +
-                        ".\nPlease review the log for further information.";
-                stagingStrategy = null;
+                        selectedStagingPluginSettings.getPluginName() + "': the Artifactory server at " +
+                        getArtifactoryServer().getUrl() + " does not support user plugins.";
             }
             strategyPluginExists = (stagingStrategy != null) && !stagingStrategy.isEmpty();
         }
@@ -144,6 +151,36 @@ public abstract class ReleaseAction<P extends AbstractProject & BuildableItemWit
         prepareDefaultPromotionConfig();
     }
 
+    /**
+     * Fetches the staging strategy in the background, so the release staging page does not wait for it
+     */
+    public void prefetchStagingStrategy() {
+        if (getArtifactoryServer() == null) {
+            return;
+        }
+        PluginSettings selectedStagingPluginSettings = getSelectedStagingPlugin();
+        if ((selectedStagingPluginSettings != null) &&
+                !UserPluginInfo.NO_PLUGIN_KEY.equals(selectedStagingPluginSettings.getPluginName())) {
+            StagingStrategyCache.prefetchStagingStrategy(project, getArtifactoryServer(),
+                    selectedStagingPluginSettings);
+        }
+    }
+
+    /**
+     * Drops the cached staging strategy and opens the release staging page again, which fetches it. Called from the
+     * UI, with a post since it changes the cached state.
+     */
+    @SuppressWarnings({"UnusedDeclaration"})
+    public void doRefreshStagingStrategy(StaplerRequest req, StaplerResponse resp) throws IOException {
+        if (!"POST".equals(req.getMethod())) {
+            resp.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        project.checkPermission(ArtifactoryPlugin.RELEASE);
+        StagingStrategyCache.invalidate(project);
+        resp.sendRedirect(".");
+    }
+
     private void resetFields() {
         strategyRequestFailed = false;
         strategyRequestErrorMessage = null;
@@ -164,6 +201,10 @@ public abstract class ReleaseAction<P extends AbstractProject & BuildableItemWit
         return strategyRequestErrorMessage;
     }
 
+    public boolean isStrategyPluginExists() {
+        return strategyPluginExists;
+    }
+
     public String getTitle() {
         StringBuilder titleBuilder = new StringBuilder("Artifactory Pro Release Staging");
         if (strategyPluginExists && StringUtils.isNotBlank(getSelectedStagingPlugin().getPluginName())) {
@@ -261,6 +302,11 @@ public abstract class ReleaseAction<P extends AbstractProject & BuildableItemWit
         return AbstractScmCoordinator.isGitScm(project);
     }
 
+    /**
+     * @return True if the Git release operations should be performed by JGit instead of the git executable
+     */
+    public abstract boolean isUseJGit();
+
     public VcsConfig getDefaultVcsConfig() {
         return defaultVcsConfig;
     }
@@ -310,6 +356,9 @@ public abstract class ReleaseAction<P extends AbstractProject & BuildableItemWit
         stagingRepositoryKey = req.getParameter("repositoryKey");
         stagingComment = req.getParameter("stagingComment");
 
+        // the strategy of the next release depends on this release
+        StagingStrategyCache.invalidate(project);
+
         // schedule release build
         if (project.scheduleBuild(0, new UserCause(), this)) {
             // redirect to the project page
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.release;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Predicate;
+import com.google.common.collect.Maps;
+import hudson.Extension;
+import hudson.Util;
+import hudson.XmlFile;
+import hudson.model.AbstractProject;
+import hudson.model.Saveable;
+import hudson.model.listeners.SaveableListener;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.jfrog.hudson.ArtifactoryServer;
+import org.jfrog.hudson.PluginSettings;
+import org.jfrog.hudson.util.Credentials;
+import org.jfrog.hudson.util.RefreshingCache;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the staging strategies returned by the staging user plugins for a short time, per project, server, plugin
+ * and plugin parameters, so the release staging page does not run the plugin every time it is opened. The strategies
+ * of a project are invalidated when a release of the project is scheduled, and when requested from the release
+ * staging page.
+ */
+public class StagingStrategyCache {
+
+    private static final long STRATEGY_CACHE_TTL = TimeUnit.MINUTES.toMillis(1);
+
+    private static final RefreshingCache<StrategyKey, Map> strategies =
+            new RefreshingCache<StrategyKey, Map>("artifactory-staging-strategy-refresh");
+
+    private StagingStrategyCache() {
+    }
+
+    /**
+     * @return The staging strategy of the project, fetched from the server only if it is not cached
+     */
+    public static Map getStagingStrategy(AbstractProject project, ArtifactoryServer server,
+            PluginSettings stagingPlugin) throws Exception {
+        return strategies.get(new StrategyKey(project, server, stagingPlugin), STRATEGY_CACHE_TTL,
+                createLoader(project, server, stagingPlugin));
+    }
+
+    /**
+     * Fetches the staging strategy of the project in the background, if it is not cached
+     */
+    public static void prefetchStagingStrategy(AbstractProject project, ArtifactoryServer server,
+            PluginSettings stagingPlugin) {
+        strategies.prefetch(new StrategyKey(project, server, stagingPlugin),
+                createLoader(project, server, stagingPlugin));
+    }
+
+    public static void invalidate(AbstractProject project) {
+        final String projectName = project.getFullName();
+        strategies.invalidateIf(new Predicate<StrategyKey>() {
+            public boolean apply(StrategyKey input) {
+                return projectName.equals(input.projectName);
+            }
+        });
+    }
+
+    public static void invalidateAll() {
+        strategies.invalidateAll();
+    }
+
+    private static Callable<Map> createLoader(final AbstractProject project, final ArtifactoryServer server,
+            final PluginSettings stagingPlugin) {
+        return new Callable<Map>() {
+            public Map call() throws Exception {
+                return server.getStagingStrategy(stagingPlugin, Util.rawEncode(project.getName()));
+            }
+        };
+    }
+
+    /**
+     * Warms up the staging strategy of a project in the background when its configuration is saved, since the
+     * staging plugin or its parameters might have changed.
+     */
+    @Extension
+    public static class ProjectSaveListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (!(o instanceof AbstractProject)) {
+                return;
+            }
+            AbstractProject project = (AbstractProject) o;
+            invalidate(project);
+            ReleaseAction releaseAction = project.getAction(ReleaseAction.class);
+            if (releaseAction != null) {
+                releaseAction.prefetchStagingStrategy();
+            }
+        }
+    }
+
+    private static class StrategyKey {
+        private final String projectName;
+        private final String url;
+        private final String username;
+        private final String passwordHash;
+        private final String pluginName;
+        private final Map<String, String> params;
+
+        private StrategyKey(AbstractProject project, ArtifactoryServer server, PluginSettings stagingPlugin) {
+            Credentials credentials = server.getResolvingCredentials();
+            this.projectName = project.getFullName();
+            this.url = server.getUrl();
+            this.username = credentials.getUsername();
+            // the keys outlive the request, so they do not keep the password as plain text
+            this.passwordHash = DigestUtils.sha256Hex(StringUtils.defaultString(credentials.getPassword()));
+            this.pluginName = stagingPlugin.getPluginName();
+            // the settings might be modified once the key is created
+            Map<String, String> paramMap = stagingPlugin.getParamMap();
+            this.params = paramMap != null ? Maps.newHashMap(paramMap) : null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StrategyKey)) {
+                return false;
+            }
+            StrategyKey other = (StrategyKey) o;
+            return Objects.equal(projectName, other.projectName) && Objects.equal(url, other.url) &&
+                    Objects.equal(username, other.username) && Objects.equal(passwordHash, other.passwordHash) &&
+                    Objects.equal(pluginName, other.pluginName) && Objects.equal(params, other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(projectName, url, username, passwordHash, pluginName, params);
+        }
+    }
+}
@@ -74,6 +74,11 @@ public class UnifiedPromoteBuildAction<C extends BuildInfoAwareConfigurator & De
     public UnifiedPromoteBuildAction(AbstractBuild build, C configurator) {
         this.build = build;
         this.configurator = configurator;
+        // the promotion form lists the promotion plugins, fetch them before the form is opened
+        ArtifactoryServer artifactoryServer = configurator.getArtifactoryServer();
+        if (artifactoryServer != null) {
+            artifactoryServer.prefetchUserPluginInfo();
+        }
     }
 
     @Override
@@ -260,7 +265,7 @@ public class UnifiedPromoteBuildAction<C extends BuildInfoAwareConfigurator & De
                 long started = System.currentTimeMillis();
                 listener.getLogger().println("Promoting build ....");
 
-                client = artifactoryServer.createArtifactoryClient(deployer.getUsername(), deployer.getPassword(),
+                client = artifactoryServer.acquireArtifactoryClient(deployer.getUsername(), deployer.getPassword(),
                         artifactoryServer.createProxyConfiguration(Hudson.getInstance().proxy));
 
                 if ((promotionPlugin != null) &&
@@ -282,9 +287,7 @@ public class UnifiedPromoteBuildAction<C extends BuildInfoAwareConfigurator & De
             } catch (Throwable e) {
                 e.printStackTrace(listener.error(e.getMessage()));
             } finally {
-                if (client != null) {
-                    client.shutdown();
-                }
+                artifactoryServer.releaseArtifactoryClient(client);
             }
         }
 
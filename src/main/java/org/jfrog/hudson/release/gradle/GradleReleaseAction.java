@@ -261,6 +261,11 @@ public class GradleReleaseAction extends ReleaseAction<FreeStyleProject, Artifac
         defaultPromotionConfig = new PromotionConfig(getDefaultStagingRepository(), null);
     }
 
+    @Override
+    public boolean isUseJGit() {
+        return getReleaseWrapper().isUseJGit();
+    }
+
     private GradleReleaseWrapper getReleaseWrapper() {
         return getWrapper().getReleaseWrapper();
     }
@@ -47,17 +47,19 @@ public class GradleReleaseWrapper {
     private String alternativeTasks;
     private String releasePropsKeys;
     private String nextIntegPropsKeys;
+    private boolean useJGit;
 
     private transient ScmCoordinator scmCoordinator;
 
     @DataBoundConstructor
     public GradleReleaseWrapper(String releaseBranchPrefix, String tagPrefix, String alternativeTasks,
-            String releasePropsKeys, String nextIntegPropsKeys) {
+            String releasePropsKeys, String nextIntegPropsKeys, boolean useJGit) {
         this.releaseBranchPrefix = releaseBranchPrefix;
         this.tagPrefix = tagPrefix;
         this.alternativeTasks = alternativeTasks;
         this.releasePropsKeys = releasePropsKeys;
         this.nextIntegPropsKeys = nextIntegPropsKeys;
+        this.useJGit = useJGit;
     }
 
     public ScmCoordinator getScmCoordinator() {
@@ -111,6 +113,15 @@ public class GradleReleaseWrapper {
         this.alternativeTasks = alternativeTasks;
     }
 
+    public boolean isUseJGit() {
+        return useJGit;
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public void setUseJGit(boolean useJGit) {
+        this.useJGit = useJGit;
+    }
+
     public String[] getReleasePropsKeysList() {
         return stringToArray(getReleasePropsKeys());
     }
@@ -183,6 +183,11 @@ public class MavenReleaseAction extends ReleaseAction<MavenModuleSet, MavenRelea
         return ActionableHelper.getPublisher(project, ArtifactoryRedeployPublisher.class);
     }
 
+    @Override
+    public boolean isUseJGit() {
+        return getWrapper().isUseJGit();
+    }
+
     private String getDefaultReleaseBranch() {
         MavenReleaseWrapper wrapper = getWrapper();
         String releaseBranchPrefix = wrapper.getReleaseBranchPrefix();
@@ -63,16 +63,18 @@ public class MavenReleaseWrapper extends BuildWrapper {
     private String releaseBranchPrefix;
     private String alternativeGoals;
     private String defaultVersioning;
+    private boolean useJGit;
 
     private transient ScmCoordinator scmCoordinator;
 
     @DataBoundConstructor
     public MavenReleaseWrapper(String releaseBranchPrefix, String tagPrefix, String alternativeGoals,
-            String defaultVersioning) {
+            String defaultVersioning, boolean useJGit) {
         this.releaseBranchPrefix = releaseBranchPrefix;
         this.tagPrefix = tagPrefix;
         this.alternativeGoals = alternativeGoals;
         this.defaultVersioning = defaultVersioning;
+        this.useJGit = useJGit;
     }
 
     public String getTagPrefix() {
@@ -113,6 +115,15 @@ public class MavenReleaseWrapper extends BuildWrapper {
         this.defaultVersioning = defaultVersioning;
     }
 
+    public boolean isUseJGit() {
+        return useJGit;
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public void setUseJGit(boolean useJGit) {
+        this.useJGit = useJGit;
+    }
+
     @Override
     public Environment setUp(AbstractBuild build, Launcher launcher, BuildListener listener)
             throws IOException, InterruptedException {
@@ -137,7 +148,7 @@ public class MavenReleaseWrapper extends BuildWrapper {
             boolean modified;
             try {
                 log(listener, "Changing POMs to release version");
-                modified = changeVersions(mavenBuild, releaseAction, true, vcsUrl);
+                modified = changeVersions(mavenBuild, releaseAction, true, vcsUrl, listener);
             } catch (SnapshotNotAllowedException e) {
                 log(listener, "ERROR: " + e.getMessage());
                 // abort the build
@@ -177,7 +188,7 @@ public class MavenReleaseWrapper extends BuildWrapper {
                                 AbstractScmCoordinator.isSvn(build.getProject())
                                 ? scmCoordinator.getRemoteUrlForPom() : null;
                         log(listener, "Changing POMs to next development version");
-                        boolean modified = changeVersions(mavenBuild, releaseAction, false, scmUrl);
+                        boolean modified = changeVersions(mavenBuild, releaseAction, false, scmUrl, listener);
                         scmCoordinator.afterDevelopmentVersionChange(modified);
                     }
                 } catch (Exception e) {
@@ -191,27 +202,31 @@ public class MavenReleaseWrapper extends BuildWrapper {
     }
 
     private boolean changeVersions(MavenModuleSetBuild mavenBuild, ReleaseAction release, boolean releaseVersion,
-            String scmUrl) throws IOException, InterruptedException {
+            String scmUrl, BuildListener listener) throws IOException, InterruptedException {
         FilePath moduleRoot = mavenBuild.getModuleRoot();
         // get the active modules only
         Collection<MavenModule> modules = mavenBuild.getProject().getDisabledModules(false);
 
         Map<ModuleName, String> modulesByName = Maps.newHashMap();
+        Map<String, ModuleName> modulesByPomPath = Maps.newLinkedHashMap();
         for (MavenModule module : modules) {
             String version = releaseVersion ? release.getReleaseVersionFor(module.getModuleName()) :
                     release.getNextVersionFor(module.getModuleName());
             modulesByName.put(module.getModuleName(), version);
+            String relativePath = module.getRelativePath();
+            String pomRelativePath = StringUtils.isBlank(relativePath) ? "pom.xml" : relativePath + "/pom.xml";
+            modulesByPomPath.put(pomRelativePath, module.getModuleName());
         }
 
+        scmCoordinator.edit(moduleRoot, modulesByPomPath.keySet());
+
+        // all the poms are transformed by a single call to the node
+        Map<String, Boolean> modifiedByPomPath = moduleRoot.act(
+                new PomBatchTransformer(modulesByPomPath, modulesByName, scmUrl, releaseVersion, listener));
         boolean modified = false;
-        for (MavenModule mavenModule : modules) {
-            String relativePath = mavenModule.getRelativePath();
-            String pomRelativePath = StringUtils.isBlank(relativePath) ? "pom.xml" : relativePath + "/pom.xml";
-            FilePath pomPath = new FilePath(moduleRoot, pomRelativePath);
-            debuggingLogger.fine("Changing version of pom: " + pomPath);
-            scmCoordinator.edit(pomPath);
-            modified |= pomPath.act(
-                    new PomTransformer(mavenModule.getModuleName(), modulesByName, scmUrl, releaseVersion));
+        for (Map.Entry<String, Boolean> entry : modifiedByPomPath.entrySet()) {
+            debuggingLogger.fine("Changed version of pom " + entry.getKey() + ": " + entry.getValue());
+            modified |= entry.getValue();
         }
         return modified;
     }
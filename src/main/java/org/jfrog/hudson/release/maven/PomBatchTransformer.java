@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.release.maven;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import hudson.FilePath;
+import hudson.maven.ModuleName;
+import hudson.model.TaskListener;
+import hudson.remoting.VirtualChannel;
+import org.jfrog.hudson.util.ConcurrentTaskRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites the project versions in all the poms of a build in a single call to the node, instead of a call per pom.
+ * The poms are transformed concurrently, and the first failure (for example a snapshot version left in a release pom)
+ * stops the transformation and is rethrown.
+ */
+public class PomBatchTransformer implements FilePath.FileCallable<Map<String, Boolean>> {
+
+    private static final int MAX_THREADS = 8;
+
+    private final Map<String, ModuleName> modulesByPomPath;
+    private final Map<ModuleName, String> versionsByModule;
+    private final String scmUrl;
+    private final boolean failOnSnapshot;
+    private final TaskListener listener;
+
+    /**
+     * @param modulesByPomPath Map of pom paths, relative to the module root, to the module of the pom
+     * @param versionsByModule Map of module names to module version
+     * @param scmUrl           Scm url to use if scm element exists in the pom files
+     * @param failOnSnapshot   If true, fail with IllegalStateException if a pom contains snapshot version after the
+     *                         version changes
+     * @param listener         The build listener
+     */
+    public PomBatchTransformer(Map<String, ModuleName> modulesByPomPath, Map<ModuleName, String> versionsByModule,
+            String scmUrl, boolean failOnSnapshot, TaskListener listener) {
+        this.modulesByPomPath = modulesByPomPath;
+        this.versionsByModule = versionsByModule;
+        this.scmUrl = scmUrl;
+        this.failOnSnapshot = failOnSnapshot;
+        this.listener = listener;
+    }
+
+    /**
+     * Performs the transformation of the poms under the module root.
+     *
+     * @return Map of the pom paths to true if the pom was modified, in the order of the given poms
+     */
+    public Map<String, Boolean> invoke(File moduleRoot, VirtualChannel channel)
+            throws IOException, InterruptedException {
+        // the module names are converted once for all the poms
+        Map<String, String> versionsByName = PomTransformer.toModuleNames(versionsByModule);
+
+        List<TransformTask> tasks = Lists.newArrayListWithCapacity(modulesByPomPath.size());
+        for (Map.Entry<String, ModuleName> entry : modulesByPomPath.entrySet()) {
+            tasks.add(new TransformTask(new File(moduleRoot, entry.getKey()), entry.getValue(), versionsByName));
+        }
+        int threads = Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors());
+        List<Boolean> results = new ConcurrentTaskRunner("artifactory-pom-transformer", threads, true,
+                listener.getLogger()).run(tasks);
+
+        Map<String, Boolean> modifiedByPomPath = Maps.newLinkedHashMap();
+        Iterator<Boolean> resultsIterator = results.iterator();
+        for (String pomPath : modulesByPomPath.keySet()) {
+            modifiedByPomPath.put(pomPath, resultsIterator.next());
+        }
+        return modifiedByPomPath;
+    }
+
+    private class TransformTask extends ConcurrentTaskRunner.LoggingTask<Boolean> {
+        private final File pomFile;
+        private final ModuleName module;
+        private final Map<String, String> versionsByName;
+
+        private TransformTask(File pomFile, ModuleName module, Map<String, String> versionsByName) {
+            this.pomFile = pomFile;
+            this.module = module;
+            this.versionsByName = versionsByName;
+        }
+
+        public Boolean call() throws Exception {
+            return PomTransformer.transform(pomFile, module, versionsByModule, versionsByName, scmUrl,
+                    failOnSnapshot);
+        }
+    }
+}
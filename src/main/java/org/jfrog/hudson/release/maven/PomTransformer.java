@@ -59,6 +59,24 @@ public class PomTransformer implements FilePath.FileCallable<Boolean> {
      * @return True if the file was modified.
      */
     public Boolean invoke(File pomFile, VirtualChannel channel) throws IOException, InterruptedException {
+        return transform(pomFile, currentModule, versionsByModule, toModuleNames(versionsByModule), scmUrl,
+                failOnSnapshot);
+    }
+
+    /**
+     * Rewrites the pom in a single streaming pass, or with the DOM transformer of the extractor if the pom cannot be
+     * rewritten by the streaming transformer without changing its formatting.
+     *
+     * @param versionsByName Map of module names to module version, as converted by {@link #toModuleNames(Map)}
+     * @return True if the file was modified.
+     */
+    static boolean transform(File pomFile, ModuleName currentModule, Map<ModuleName, String> versionsByModule,
+            Map<String, String> versionsByName, String scmUrl, boolean failOnSnapshot) throws IOException {
+        Boolean modified = new StreamingPomTransformer(toModuleName(currentModule), versionsByName, scmUrl,
+                failOnSnapshot).transform(pomFile);
+        if (modified != null) {
+            return modified;
+        }
 
         org.jfrog.build.extractor.maven.reader.ModuleName current = new org.jfrog.build.extractor.maven.reader.ModuleName(
                 currentModule.groupId, currentModule.artifactId);
@@ -75,4 +93,19 @@ public class PomTransformer implements FilePath.FileCallable<Boolean> {
 
         return transformer.transform(pomFile);
     }
+
+    /**
+     * @return Map of module names, as groupId:artifactId, to module version
+     */
+    static Map<String, String> toModuleNames(Map<ModuleName, String> versionsByModule) {
+        Map<String, String> modules = Maps.newHashMap();
+        for (Map.Entry<ModuleName, String> entry : versionsByModule.entrySet()) {
+            modules.put(toModuleName(entry.getKey()), entry.getValue());
+        }
+        return modules;
+    }
+
+    private static String toModuleName(ModuleName moduleName) {
+        return moduleName.groupId + ":" + moduleName.artifactId;
+    }
 }
@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.release.maven;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringEscapeUtils;
+import org.apache.commons.lang.StringUtils;
+import org.jfrog.build.extractor.maven.transformer.SnapshotNotAllowedException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites the project version, the parent version, the dependency versions and the scm urls of a pom in a single
+ * streaming pass, without building the document in memory. Only the text of the changed elements is replaced, so the
+ * rest of the file, including whitespace and comments, is written back as is.
+ * <p/>
+ * The parser only locates the elements to change. If the located text does not match the parsed text, as with
+ * entities, CDATA sections or empty elements, the pom cannot be rewritten safely and {@link #transform(File)} returns
+ * null, so the caller can fall back to the DOM transformer.
+ */
+public class StreamingPomTransformer {
+
+    private static final String SNAPSHOT_SUFFIX = "-SNAPSHOT";
+
+    private final String currentModule;
+    private final Map<String, String> versionsByModule;
+    private final String scmUrl;
+    private final boolean failOnSnapshot;
+    // a factory per transformer, since some implementations reuse their readers
+    private final XMLInputFactory xmlInputFactory = createXmlInputFactory();
+
+    /**
+     * @param currentModule    The current module we work on, as groupId:artifactId
+     * @param versionsByModule Map of module names, as groupId:artifactId, to module version
+     * @param scmUrl           Scm url to use if scm element exists in the pom file
+     * @param failOnSnapshot   If true, fail with SnapshotNotAllowedException if the pom contains snapshot version after
+     *                         the version changes
+     */
+    public StreamingPomTransformer(String currentModule, Map<String, String> versionsByModule, String scmUrl,
+            boolean failOnSnapshot) {
+        this.currentModule = currentModule;
+        this.versionsByModule = versionsByModule;
+        this.scmUrl = scmUrl;
+        this.failOnSnapshot = failOnSnapshot;
+    }
+
+    /**
+     * Performs the transformation.
+     *
+     * @return True if the file was modified, false if not, null if the pom could not be rewritten without changing
+     * its formatting, in which case the file is left untouched
+     */
+    public Boolean transform(File pomFile) throws IOException {
+        byte[] bytes = FileUtils.readFileToByteArray(pomFile);
+        String encoding = readEncoding(bytes);
+        String content = new String(bytes, encoding);
+        // the parser does not report the byte order mark, skip it so the offsets match the content
+        int contentStart = content.startsWith("\uFEFF") ? 1 : 0;
+
+        List<Replacement> replacements;
+        try {
+            replacements = new Scanner(content, contentStart).scan();
+        } catch (XMLStreamException e) {
+            // let the DOM transformer report the parsing error
+            return null;
+        }
+        if (replacements == null) {
+            return null;
+        }
+
+        // the project version is located after the elements that follow it
+        Collections.sort(replacements);
+        boolean modified = false;
+        StringBuilder transformed = new StringBuilder(content.length() + 64);
+        int position = 0;
+        for (Replacement replacement : replacements) {
+            if (replacement.modified) {
+                transformed.append(content, position, replacement.start);
+                transformed.append(StringEscapeUtils.escapeXml(replacement.text));
+                position = replacement.end;
+                modified = true;
+            }
+        }
+        if (!modified) {
+            return false;
+        }
+        transformed.append(content, position, content.length());
+        FileUtils.writeStringToFile(pomFile, transformed.toString(), encoding);
+        return true;
+    }
+
+    private String readEncoding(byte[] bytes) {
+        try {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(bytes));
+            try {
+                String encoding = reader.getCharacterEncodingScheme();
+                if (encoding == null) {
+                    encoding = reader.getEncoding();
+                }
+                return encoding != null ? encoding : "UTF-8";
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            return "UTF-8";
+        }
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+
+    private static String moduleName(Coordinates coordinates) {
+        return coordinates.groupId + ":" + coordinates.artifactId;
+    }
+
+    /**
+     * Locates the elements to change in a single pass over the pom.
+     */
+    private class Scanner {
+        private final String content;
+        private final int contentStart;
+        private final List<Replacement> replacements = Lists.newArrayList();
+        private final List<String> path = Lists.newArrayList();
+        private Coordinates project;
+        private Coordinates coordinates;
+        private boolean locatable = true;
+
+        private Scanner(String content, int contentStart) {
+            this.content = content;
+            this.contentStart = contentStart;
+        }
+
+        /**
+         * @return The replacements of the located elements, null if an element could not be located
+         */
+        private List<Replacement> scan() throws XMLStreamException {
+            XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(
+                    new StringReader(content.substring(contentStart)));
+            try {
+                while (locatable && reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        startElement(reader);
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        endElement();
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+            return locatable ? replacements : null;
+        }
+
+        private void startElement(XMLStreamReader reader) throws XMLStreamException {
+            String name = reader.getLocalName();
+            path.add(name);
+            String elementPath = StringUtils.join(path, '/');
+            if ("project".equals(elementPath)) {
+                project = new Coordinates();
+                coordinates = project;
+            } else if ("project/parent".equals(elementPath) ||
+                    "project/dependencyManagement/dependencies/dependency".equals(elementPath) ||
+                    "project/dependencies/dependency".equals(elementPath)) {
+                coordinates = new Coordinates();
+            } else if ("project/scm/connection".equals(elementPath) ||
+                    "project/scm/developerConnection".equals(elementPath)) {
+                readScmElement(reader, "scm:svn:" + scmUrl);
+            } else if ("project/scm/url".equals(elementPath)) {
+                readScmElement(reader, scmUrl);
+            } else if (coordinates != null && isCoordinatesElement(elementPath)) {
+                readCoordinate(reader, name);
+            }
+        }
+
+        private boolean isCoordinatesElement(String elementPath) {
+            String parentPath = StringUtils.substringBeforeLast(elementPath, "/");
+            return "project".equals(parentPath) || "project/parent".equals(parentPath) ||
+                    "project/dependencyManagement/dependencies/dependency".equals(parentPath) ||
+                    "project/dependencies/dependency".equals(parentPath);
+        }
+
+        private void readCoordinate(XMLStreamReader reader, String name) throws XMLStreamException {
+            if ("groupId".equals(name)) {
+                coordinates.groupId = readText(reader).trim();
+            } else if ("artifactId".equals(name)) {
+                coordinates.artifactId = readText(reader).trim();
+            } else if ("version".equals(name)) {
+                coordinates.version = locateText(reader);
+            }
+        }
+
+        private void readScmElement(XMLStreamReader reader, String text) throws XMLStreamException {
+            if (StringUtils.isBlank(scmUrl)) {
+                return;
+            }
+            Replacement replacement = locateText(reader);
+            if (replacement != null) {
+                replacement.setText(text);
+                replacements.add(replacement);
+            }
+        }
+
+        private String readText(XMLStreamReader reader) throws XMLStreamException {
+            String text = reader.getElementText();
+            // the reader is now on the end of the element
+            path.remove(path.size() - 1);
+            return text;
+        }
+
+        /**
+         * @return The location of the text of the current element, with the text as its current value
+         */
+        private Replacement locateText(XMLStreamReader reader) throws XMLStreamException {
+            int offset = reader.getLocation().getCharacterOffset();
+            String prefix = reader.getPrefix();
+            String qualifiedName = StringUtils.isEmpty(prefix) ? reader.getLocalName() :
+                    prefix + ":" + reader.getLocalName();
+            String text = readText(reader);
+            if (offset < 0) {
+                locatable = false;
+                return null;
+            }
+            // parsers report either the start or the end of the start tag, the tag starts at or before the offset
+            int tagStart = lastIndexOfStartTag(qualifiedName, contentStart + Math.min(offset, content.length()));
+            int tagEnd = tagStart < 0 ? -1 : content.indexOf('>', tagStart);
+            int textEnd = tagEnd < 0 ? -1 : content.indexOf("</", tagEnd);
+            if (textEnd < 0 || content.charAt(tagEnd - 1) == '/' ||
+                    !text.equals(content.substring(tagEnd + 1, textEnd))) {
+                // entities, CDATA, comments or an empty element
+                locatable = false;
+                return null;
+            }
+            return new Replacement(tagEnd + 1, textEnd, text);
+        }
+
+        private int lastIndexOfStartTag(String qualifiedName, int fromIndex) {
+            String tag = "<" + qualifiedName;
+            int index = content.lastIndexOf(tag, fromIndex);
+            while (index >= 0) {
+                char next = index + tag.length() < content.length() ? content.charAt(index + tag.length()) : '>';
+                if (next == '>' || next == '/' || Character.isWhitespace(next)) {
+                    return index;
+                }
+                index = content.lastIndexOf(tag, index - 1);
+            }
+            return -1;
+        }
+
+        private void endElement() {
+            String elementPath = StringUtils.join(path, '/');
+            path.remove(path.size() - 1);
+            if ("project".equals(elementPath)) {
+                changeProjectVersion();
+            } else if ("project/parent".equals(elementPath)) {
+                changeVersion(coordinates);
+                coordinates = project;
+            } else if ("project/dependencyManagement/dependencies/dependency".equals(elementPath) ||
+                    "project/dependencies/dependency".equals(elementPath)) {
+                changeVersion(coordinates);
+                coordinates = project;
+            }
+        }
+
+        private void changeProjectVersion() {
+            String version = versionsByModule.get(currentModule);
+            if (version == null) {
+                return;
+            }
+            if (project.version != null) {
+                project.version.setText(version);
+                replacements.add(project.version);
+            }
+            verifyNonSnapshotVersion(currentModule, version);
+        }
+
+        /**
+         * Changes the version of a parent or a dependency which is a module of the build, and verifies the version
+         * of any other parent or dependency.
+         */
+        private void changeVersion(Coordinates coordinates) {
+            if (coordinates.groupId == null || coordinates.artifactId == null || coordinates.version == null) {
+                return;
+            }
+            String moduleName = moduleName(coordinates);
+            String version = versionsByModule.get(moduleName);
+            if (version == null) {
+                // not part of the currently built project
+                verifyNonSnapshotVersion(moduleName, coordinates.version.text);
+                return;
+            }
+            coordinates.version.setText(version);
+            replacements.add(coordinates.version);
+        }
+
+        private void verifyNonSnapshotVersion(String moduleName, String version) {
+            if (failOnSnapshot && version.trim().endsWith(SNAPSHOT_SUFFIX)) {
+                throw new SnapshotNotAllowedException(
+                        "Snapshot versions are not allowed in a release: " + moduleName + ":" + version.trim());
+            }
+        }
+    }
+
+    private static class Coordinates {
+        private String groupId;
+        private String artifactId;
+        private Replacement version;
+    }
+
+    /**
+     * The text of an element, replaced in the rewritten pom.
+     */
+    private static class Replacement implements Comparable<Replacement> {
+        private final int start;
+        private final int end;
+        private final String originalText;
+        private String text;
+        private boolean modified;
+
+        private Replacement(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.originalText = text;
+            this.text = text;
+        }
+
+        private void setText(String text) {
+            this.text = text;
+            this.modified = !text.equals(originalText);
+        }
+
+        public int compareTo(Replacement o) {
+            return start < o.start ? -1 : (start == o.start ? 0 : 1);
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.jfrog.hudson.release.scm.perforce.PerforceCoordinator;
 import org.jfrog.hudson.release.scm.svn.SubversionCoordinator;
 
 import java.io.IOException;
+import java.util.Collection;
 
 /**
  * This class coordinates between the release steps and required scm actions based on the svm manager.
@@ -104,4 +105,10 @@ public abstract class AbstractScmCoordinator implements ScmCoordinator {
     public void edit(FilePath filePath) throws IOException, InterruptedException {
 
     }
+
+    public void edit(FilePath root, Collection<String> relativePaths) throws IOException, InterruptedException {
+        for (String relativePath : relativePaths) {
+            edit(new FilePath(root, relativePath));
+        }
+    }
 }
@@ -19,6 +19,7 @@ package org.jfrog.hudson.release.scm;
 import hudson.FilePath;
 
 import java.io.IOException;
+import java.util.Collection;
 
 /**
  * Base interface for specific scm coordinators.
@@ -72,5 +73,13 @@ public interface ScmCoordinator {
      */
     void edit(FilePath filePath) throws IOException, InterruptedException;
 
+    /**
+     * Called before several files are modified.
+     *
+     * @param root          The directory of the files
+     * @param relativePaths The paths, relative to the root, of the files that are about to be modified
+     */
+    void edit(FilePath root, Collection<String> relativePaths) throws IOException, InterruptedException;
+
     String getRemoteUrlForPom();
 }
@@ -69,7 +69,7 @@ public class GitCoordinator extends AbstractScmCoordinator {
         Branch branch = lastRevision.getBranches().iterator().next();
         checkoutBranch = StringUtils.removeStart(branch.getName(), "origin/");
 
-        scmManager = new GitManager(build, listener);
+        scmManager = new GitManager(build, listener, releaseAction.isUseJGit());
 
         baseCommitIsh = scmManager.getCurrentCommitHash();
     }
@@ -88,6 +88,11 @@ public class GitCoordinator extends AbstractScmCoordinator {
     }
 
     public void afterSuccessfulReleaseVersionBuild() throws InterruptedException, IOException {
+        if (scmManager.isUseJGit()) {
+            commitTagAndPushReleaseVersion();
+            return;
+        }
+
         if (modifiedFilesForReleaseVersion) {
             // commit local changes
             log(String.format("Committing release version on branch '%s'", state.currentWorkingBranch));
@@ -100,16 +105,43 @@ public class GitCoordinator extends AbstractScmCoordinator {
             state.tagCreated = true;
         }
 
-        if (modifiedFilesForReleaseVersion) {
-            // push the current branch
-            scmManager.push(scmManager.getRemoteUrl(), state.currentWorkingBranch);
-            state.releaseBranchPushed = true;
+        // push the current branch and the tag together
+        String branchToPush = modifiedFilesForReleaseVersion ? state.currentWorkingBranch : null;
+        String tagToPush = releaseAction.isCreateVcsTag() ? releaseAction.getTagUrl() : null;
+        if (branchToPush != null || tagToPush != null) {
+            // the remote might accept some of the refs and reject others, only the refs it updated are rolled back
+            PushedRefs pushedRefs = scmManager.pushBranchAndTag(scmManager.getRemoteUrl(), branchToPush, tagToPush);
+            state.releaseBranchPushed = isReleaseBranch(branchToPush) &&
+                    pushedRefs.isUpdated(GitManager.branchRef(branchToPush));
+            state.tagPushed = tagToPush != null && pushedRefs.isUpdated(GitManager.tagRef(tagToPush));
+            if (pushedRefs.getErrorMessage() != null) {
+                throw new IOException("Failed to push: " + pushedRefs.getErrorMessage());
+            }
         }
+    }
 
-        if (releaseAction.isCreateVcsTag()) {
-            // push the tag
-            scmManager.pushTag(scmManager.getRemoteUrl(), releaseAction.getTagUrl());
-            state.tagPushed = true;
+    /**
+     * @return True if the branch is the release branch created by this build, which is deleted on failure
+     */
+    private boolean isReleaseBranch(String branch) {
+        return branch != null && state.releaseBranchCreated && branch.equals(releaseBranch);
+    }
+
+    private void commitTagAndPushReleaseVersion() throws IOException, InterruptedException {
+        String commitMessage = null;
+        if (modifiedFilesForReleaseVersion) {
+            log(String.format("Committing release version on branch '%s'", state.currentWorkingBranch));
+            commitMessage = releaseAction.getDefaultVcsConfig().getTagComment();
+        }
+        String tagName = releaseAction.isCreateVcsTag() ? releaseAction.getTagUrl() : null;
+
+        GitManager.ReleaseVersionResult result = scmManager.commitTagAndPush(commitMessage, tagName,
+                releaseAction.getTagComment(), scmManager.getRemoteUrl(), state.currentWorkingBranch);
+        state.tagCreated = result.isTagCreated();
+        state.releaseBranchPushed = result.isBranchPushed() && isReleaseBranch(state.currentWorkingBranch);
+        state.tagPushed = result.isTagPushed();
+        if (result.getErrorMessage() != null) {
+            throw new IOException(result.getErrorMessage());
         }
     }
 
@@ -145,14 +177,13 @@ public class GitCoordinator extends AbstractScmCoordinator {
             if (state.releaseBranchCreated) {
                 safeDeleteBranch(releaseBranch);
             }
-            if (state.releaseBranchPushed) {
-                safeDeleteRemoteBranch(scmManager.getRemoteUrl(), releaseBranch);
-            }
             if (state.tagCreated) {
                 safeDeleteTag(releaseAction.getTagUrl());
             }
-            if (state.tagPushed) {
-                safeDeleteRemoteTag(scmManager.getRemoteUrl(), releaseAction.getTagUrl());
+            if (state.releaseBranchPushed || state.tagPushed) {
+                String pushedBranch = state.releaseBranchPushed ? releaseBranch : null;
+                String pushedTag = state.tagPushed ? releaseAction.getTagUrl() : null;
+                safeDeleteRemoteBranchAndTag(scmManager.getRemoteUrl(), pushedBranch, pushedTag);
             }
             // reset changes done on the original checkout branch (next dev version)
             safeRevertWorkingCopy();
@@ -168,15 +199,6 @@ public class GitCoordinator extends AbstractScmCoordinator {
         }
     }
 
-    private void safeDeleteRemoteBranch(String remoteRepository, String branch) {
-        try {
-            scmManager.deleteRemoteBranch(remoteRepository, branch);
-        } catch (Exception e) {
-            debuggingLogger.log(Level.FINE, "Failed to delete remote release branch: ", e);
-            log("Failed to delete remote release branch: " + e.getLocalizedMessage());
-        }
-    }
-
     private void safeDeleteTag(String tag) {
         try {
             scmManager.deleteLocalTag(tag);
@@ -186,13 +208,12 @@ public class GitCoordinator extends AbstractScmCoordinator {
         }
     }
 
-    private void safeDeleteRemoteTag(String remoteRepository, String tag) {
+    private void safeDeleteRemoteBranchAndTag(String remoteRepository, String branch, String tag) {
         try {
-
-            scmManager.deleteRemoteTag(remoteRepository, tag);
+            scmManager.deleteRemoteBranchAndTag(remoteRepository, branch, tag);
         } catch (Exception e) {
-            debuggingLogger.log(Level.FINE, "Failed to delete remote tag: ", e);
-            log("Failed to delete remote tag: " + e.getLocalizedMessage());
+            debuggingLogger.log(Level.FINE, "Failed to delete remote release branch and tag: ", e);
+            log("Failed to delete remote release branch and tag: " + e.getLocalizedMessage());
         }
     }
 
@@ -16,6 +16,7 @@
 
 package org.jfrog.hudson.release.scm.git;
 
+import com.google.common.collect.Lists;
 import hudson.EnvVars;
 import hudson.FilePath;
 import hudson.model.AbstractBuild;
@@ -26,37 +27,71 @@ import hudson.plugins.git.GitSCM;
 import hudson.remoting.VirtualChannel;
 import hudson.util.ArgumentListBuilder;
 import org.apache.commons.lang.StringUtils;
+import org.eclipse.jgit.api.CheckoutCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
 import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
 import org.eclipse.jgit.transport.URIish;
 import org.jfrog.hudson.release.scm.AbstractScmManager;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
+import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Interacts with Git repository for the various release operations.
+ * Interacts with Git repository for the various release operations. The operations are performed either by the git
+ * executable, or by the JGit library inside the agent process, which spares the process forks of the git executable.
  *
  * @author Yossi Shaul
  */
 public class GitManager extends AbstractScmManager<GitSCM> {
     private static Logger debuggingLogger = Logger.getLogger(GitManager.class.getName());
 
+    private final boolean useJGit;
+
     public GitManager(AbstractBuild<?, ?> build, TaskListener buildListener) {
+        this(build, buildListener, false);
+    }
+
+    public GitManager(AbstractBuild<?, ?> build, TaskListener buildListener, boolean useJGit) {
         super(build, buildListener);
+        this.useJGit = useJGit;
+    }
+
+    public boolean isUseJGit() {
+        return useJGit;
     }
 
     public String getCurrentCommitHash() throws IOException, InterruptedException {
         FilePath workspace = build.getWorkspace();
         GitSCM gitSCM = getJenkinsScm();
-        return workspace
-                .act(new CurrentCommitCallable(gitSCM, getWorkingDirectory(gitSCM, workspace), build, buildListener));
+        FilePath workingDirectory = getWorkingDirectory(gitSCM, workspace);
+        if (useJGit) {
+            return workspace.act(new JGitCurrentCommitCallable(gitSCM, buildListener, workingDirectory));
+        }
+        return workspace.act(new CurrentCommitCallable(gitSCM, workingDirectory, build, buildListener));
     }
 
     public String checkoutBranch(final String branch, final boolean create) throws IOException, InterruptedException {
         FilePath workspace = build.getWorkspace();
         GitSCM gitSCM = getJenkinsScm();
         FilePath workingDirectory = getWorkingDirectory(gitSCM, workspace);
+        if (useJGit) {
+            return workspace.act(new JGitCheckoutBranchCallable(create, branch, gitSCM, buildListener,
+                    workingDirectory));
+        }
         return workspace
                 .act(new CheckoutBranchCallable(create, branch, gitSCM, buildListener, build, workingDirectory));
     }
@@ -65,6 +100,10 @@ public class GitManager extends AbstractScmManager<GitSCM> {
         FilePath workspace = build.getWorkspace();
         GitSCM gitSCM = getJenkinsScm();
         FilePath workingDirectory = getWorkingDirectory(gitSCM, workspace);
+        if (useJGit) {
+            workspace.act(new JGitCommitWorkingCopyCallable(commitMessage, gitSCM, buildListener, workingDirectory));
+            return;
+        }
         workspace.act(new CommitWorkingCopyCallable(commitMessage, gitSCM, buildListener, build,
                 workingDirectory));
     }
@@ -74,6 +113,10 @@ public class GitManager extends AbstractScmManager<GitSCM> {
         FilePath workspace = build.getWorkspace();
         GitSCM gitSCM = getJenkinsScm();
         FilePath workingDirectory = getWorkingDirectory(gitSCM, workspace);
+        if (useJGit) {
+            workspace.act(new JGitCreateTagCallable(tagName, commitMessage, gitSCM, buildListener, workingDirectory));
+            return;
+        }
         workspace.act(new CreateTagCallable(tagName, commitMessage, gitSCM, buildListener, build, workingDirectory));
     }
 
@@ -81,17 +124,85 @@ public class GitManager extends AbstractScmManager<GitSCM> {
         FilePath workspace = build.getWorkspace();
         GitSCM gitSCM = getJenkinsScm();
         FilePath workingDirectory = getWorkingDirectory(gitSCM, workspace);
+        if (useJGit) {
+            log(String.format("Pushing branch '%s' to '%s'", branch, remoteRepository));
+            PushedRefs pushedRefs = workspace.act(new JGitPushCallable(remoteRepository, gitSCM, buildListener,
+                    workingDirectory, branchRef(branch)));
+            failOnRejection(pushedRefs, "Failed to push");
+            return String.format("Pushed branch '%s'", branch);
+        }
         return workspace
                 .act(new PushCallable(branch, remoteRepository, gitSCM, buildListener, build, workingDirectory));
     }
 
-    public String pushTag(final String remoteRepository, final String tagName)
+    /**
+     * Pushes the branch and the tag to the remote repository in one transport session, so the remote repository is
+     * negotiated once. The remote might accept some of the refs and reject others.
+     *
+     * @param branch  The branch to push, null to push only the tag
+     * @param tagName The tag to push, null to push only the branch
+     * @return The refs the remote updated and the refs it rejected
+     */
+    public PushedRefs pushBranchAndTag(String remoteRepository, String branch, String tagName)
             throws IOException, InterruptedException {
         FilePath workspace = build.getWorkspace();
         GitSCM gitSCM = getJenkinsScm();
         FilePath directory = getWorkingDirectory(gitSCM, workspace);
-        return workspace
-                .act(new PushTagCallable(tagName, remoteRepository, gitSCM, buildListener, build, directory));
+        log(String.format("Pushing %s to '%s'", describeRefs(branch, tagName), remoteRepository));
+        String[] refSpecs = createRefSpecs("", branch, tagName);
+        if (useJGit) {
+            return workspace.act(new JGitPushCallable(remoteRepository, gitSCM, buildListener, directory, refSpecs));
+        }
+        return workspace.act(new PushRefSpecsCallable(remoteRepository, refSpecs, "Failed to push", gitSCM,
+                buildListener, build, directory));
+    }
+
+    /**
+     * Deletes the branch and the tag from the remote repository in one transport session.
+     *
+     * @param branch  The branch to delete, null to delete only the tag
+     * @param tagName The tag to delete, null to delete only the branch
+     */
+    public String deleteRemoteBranchAndTag(String remoteRepository, String branch, String tagName)
+            throws IOException, InterruptedException {
+        FilePath workspace = build.getWorkspace();
+        GitSCM gitSCM = getJenkinsScm();
+        FilePath directory = getWorkingDirectory(gitSCM, workspace);
+        log(String.format("Deleting remote %s from '%s'", describeRefs(branch, tagName), remoteRepository));
+        String[] refSpecs = createRefSpecs(":", branch, tagName);
+        PushedRefs pushedRefs;
+        if (useJGit) {
+            pushedRefs = workspace.act(new JGitPushCallable(remoteRepository, gitSCM, buildListener, directory,
+                    refSpecs));
+        } else {
+            pushedRefs = workspace.act(new PushRefSpecsCallable(remoteRepository, refSpecs,
+                    "Git remote refs deletion failed", gitSCM, buildListener, build, directory));
+        }
+        failOnRejection(pushedRefs, "Git remote refs deletion failed");
+        return String.format("Deleted remote %s", describeRefs(branch, tagName));
+    }
+
+    /**
+     * Commits the release version, creates the release tag and pushes both in a single call to the node. Available
+     * only with the JGit backend.
+     *
+     * @param commitMessage    The commit message of the release version, null if there is nothing to commit and push
+     * @param tagName          The release tag, null if no tag should be created
+     * @param tagComment       The comment of the release tag
+     * @param remoteRepository The remote repository to push to
+     * @param branch           The branch to push
+     * @return The steps that were completed, and the failure that stopped the sequence if any
+     */
+    public ReleaseVersionResult commitTagAndPush(String commitMessage, String tagName, String tagComment,
+            String remoteRepository, String branch) throws IOException, InterruptedException {
+        if (!useJGit) {
+            throw new IllegalStateException("A single call release sequence requires the JGit backend");
+        }
+        FilePath workspace = build.getWorkspace();
+        GitSCM gitSCM = getJenkinsScm();
+        FilePath workingDirectory = getWorkingDirectory(gitSCM, workspace);
+        return workspace.act(new JGitReleaseVersionCallable(commitMessage, tagName, tagComment, remoteRepository,
+                branch, gitSCM, buildListener, workingDirectory));
     }
 
     public String pull(final String remoteRepository, final String branch) throws IOException, InterruptedException {
@@ -105,39 +216,36 @@ public class GitManager extends AbstractScmManager<GitSCM> {
     public void revertWorkingCopy(final String commitIsh) throws IOException, InterruptedException {
         FilePath workspace = build.getWorkspace();
         FilePath directory = getWorkingDirectory(getJenkinsScm(), workspace);
+        if (useJGit) {
+            workspace.act(new JGitRevertCallable(commitIsh, getJenkinsScm(), buildListener, directory));
+            return;
+        }
         workspace.act(new RevertCallable(commitIsh, getJenkinsScm(), buildListener, build, directory));
     }
 
     public String deleteLocalBranch(final String branch) throws IOException, InterruptedException {
         FilePath workspace = build.getWorkspace();
         FilePath directory = getWorkingDirectory(getJenkinsScm(), workspace);
+        if (useJGit) {
+            log("Deleting local git branch: " + branch);
+            return workspace.act(new JGitDeleteLocalRefCallable(Constants.R_HEADS + branch, getJenkinsScm(),
+                    buildListener, directory));
+        }
         return workspace.act(new DeleteLocalBranchCallable(branch, getJenkinsScm(), buildListener, build, directory));
     }
 
-    public String deleteRemoteBranch(final String remoteRepository, final String branch)
-            throws IOException, InterruptedException {
-        FilePath workspace = build.getWorkspace();
-        FilePath directory = getWorkingDirectory(getJenkinsScm(), workspace);
-        return workspace
-                .act(new DeleteRemoteBranchCallable(branch, remoteRepository, getJenkinsScm(), buildListener,
-                        build, directory));
-    }
-
     public String deleteLocalTag(final String tag) throws IOException, InterruptedException {
         FilePath workspace = build.getWorkspace();
         FilePath directory = getWorkingDirectory(getJenkinsScm(), workspace);
+        if (useJGit) {
+            log("Deleting local tag: " + tag);
+            return workspace.act(new JGitDeleteLocalRefCallable(Constants.R_TAGS + tag, getJenkinsScm(),
+                    buildListener, directory));
+        }
         return workspace.act(new DeleteLocalTagCallable(tag, getJenkinsScm(), buildListener, build,
                 directory));
     }
 
-    public String deleteRemoteTag(final String remoteRepository, final String tag)
-            throws IOException, InterruptedException {
-        FilePath workspace = build.getWorkspace();
-        FilePath directory = getWorkingDirectory(getJenkinsScm(), workspace);
-        return workspace.act(
-                new DeleteRemoteTagCallable(tag, remoteRepository, getJenkinsScm(), buildListener, build, directory));
-    }
-
     public String getRemoteUrl() {
         RemoteConfig remoteConfig = getJenkinsScm().getRepositories().get(0);
         URIish uri = remoteConfig.getURIs().get(0);
@@ -165,6 +273,358 @@ public class GitManager extends AbstractScmManager<GitSCM> {
         return new FilePath(ws, relativeTargetDir);
     }
 
+    private static String escapeTagName(String tagName) {
+        return tagName.replace(' ', '_');
+    }
+
+    /**
+     * @return The full name of the ref of the branch
+     */
+    public static String branchRef(String branch) {
+        return Constants.R_HEADS + branch;
+    }
+
+    /**
+     * @return The full name of the ref of the tag
+     */
+    public static String tagRef(String tagName) {
+        return Constants.R_TAGS + escapeTagName(tagName);
+    }
+
+    private static String[] createRefSpecs(String prefix, String branch, String tagName) {
+        List<String> refSpecs = Lists.newArrayList();
+        if (branch != null) {
+            refSpecs.add(prefix + branchRef(branch));
+        }
+        if (tagName != null) {
+            refSpecs.add(prefix + tagRef(tagName));
+        }
+        return refSpecs.toArray(new String[refSpecs.size()]);
+    }
+
+    private static void failOnRejection(PushedRefs pushedRefs, String failureMessage) throws IOException {
+        if (pushedRefs.getErrorMessage() != null) {
+            throw new IOException(failureMessage + ": " + pushedRefs.getErrorMessage());
+        }
+    }
+
+    private static String describeRefs(String branch, String tagName) {
+        if (tagName == null) {
+            return String.format("branch '%s'", branch);
+        }
+        if (branch == null) {
+            return String.format("tag '%s'", tagName);
+        }
+        return String.format("branch '%s' and tag '%s'", branch, tagName);
+    }
+
+    /**
+     * Pushes the given ref specs to the remote repository in one transport session.
+     *
+     * @return The refs the remote updated and the refs it rejected
+     */
+    private static PushedRefs pushRefSpecs(Git git, String remoteRepository, String... refSpecs) throws Exception {
+        RefSpec[] specs = new RefSpec[refSpecs.length];
+        for (int i = 0; i < refSpecs.length; i++) {
+            specs[i] = new RefSpec(refSpecs[i]);
+        }
+        Iterable<PushResult> results = git.push().setRemote(remoteRepository).setRefSpecs(specs).call();
+        PushedRefs pushedRefs = new PushedRefs();
+        for (PushResult result : results) {
+            for (RemoteRefUpdate update : result.getRemoteUpdates()) {
+                RemoteRefUpdate.Status status = update.getStatus();
+                debuggingLogger.fine(String.format("Push of '%s': %s", update.getRemoteName(), status));
+                if (status == RemoteRefUpdate.Status.OK) {
+                    pushedRefs.updated(update.getRemoteName());
+                } else if (status != RemoteRefUpdate.Status.UP_TO_DATE &&
+                        !(update.isDelete() && status == RemoteRefUpdate.Status.NON_EXISTING)) {
+                    pushedRefs.rejected(update.getRemoteName(),
+                            (status + " " + StringUtils.defaultString(update.getMessage())).trim());
+                }
+            }
+        }
+        return pushedRefs;
+    }
+
+    /**
+     * The steps completed by the {@link JGitReleaseVersionCallable}.
+     */
+    public static class ReleaseVersionResult implements Serializable {
+        private boolean tagCreated;
+        private boolean branchPushed;
+        private boolean tagPushed;
+        private String errorMessage;
+
+        public boolean isTagCreated() {
+            return tagCreated;
+        }
+
+        public boolean isBranchPushed() {
+            return branchPushed;
+        }
+
+        public boolean isTagPushed() {
+            return tagPushed;
+        }
+
+        /**
+         * @return The failure that stopped the sequence, null if all the steps completed
+         */
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+    }
+
+    /**
+     * Base class for the operations performed by JGit in the agent process. Repository and ref failures of JGit are
+     * reported as {@link IOException}s, like the failures of the git executable.
+     */
+    private abstract static class JGitCallable<T> implements FilePath.FileCallable<T> {
+        protected final TaskListener listener;
+        private final FilePath workingCopy;
+        private final String confName;
+        private final String confEmail;
+        private final String failureMessage;
+
+        protected JGitCallable(GitSCM gitSCM, TaskListener listener, FilePath workingCopy, String failureMessage) {
+            this.listener = listener;
+            this.workingCopy = workingCopy;
+            this.confName = gitSCM.getGitConfigNameToUse();
+            this.confEmail = gitSCM.getGitConfigEmailToUse();
+            this.failureMessage = failureMessage;
+        }
+
+        public T invoke(File ws, VirtualChannel channel) throws IOException, InterruptedException {
+            Git git = Git.open(new File(workingCopy.getRemote()));
+            try {
+                return invoke(git);
+            } catch (IOException e) {
+                throw e;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(failureMessage + ": " + e.getMessage(), e);
+            } finally {
+                git.getRepository().close();
+            }
+        }
+
+        protected abstract T invoke(Git git) throws Exception;
+
+        /**
+         * @return The configured git user, or the user of the repository configuration if none is configured
+         */
+        protected PersonIdent getPersonIdent(Repository repository) {
+            PersonIdent repositoryIdent = new PersonIdent(repository);
+            return new PersonIdent(StringUtils.isNotBlank(confName) ? confName : repositoryIdent.getName(),
+                    StringUtils.isNotBlank(confEmail) ? confEmail : repositoryIdent.getEmailAddress());
+        }
+    }
+
+    private static class JGitCurrentCommitCallable extends JGitCallable<String> {
+        private JGitCurrentCommitCallable(GitSCM gitSCM, TaskListener listener, FilePath workingCopy) {
+            super(gitSCM, listener, workingCopy, "Failed retrieving current commit hash");
+        }
+
+        @Override
+        protected String invoke(Git git) throws Exception {
+            ObjectId head = git.getRepository().resolve(Constants.HEAD);
+            if (head == null) {
+                throw new IOException("Failed retrieving current commit hash: HEAD cannot be resolved");
+            }
+            debuggingLogger.fine(String.format("Base commit hash%s", head.name()));
+            return head.name();
+        }
+    }
+
+    private static class JGitCheckoutBranchCallable extends JGitCallable<String> {
+        private final boolean create;
+        private final String branch;
+
+        private JGitCheckoutBranchCallable(boolean create, String branch, GitSCM gitSCM, TaskListener listener,
+                FilePath workingCopy) {
+            super(gitSCM, listener, workingCopy, "Failed checkout branch");
+            this.create = create;
+            this.branch = branch;
+        }
+
+        @Override
+        protected String invoke(Git git) throws Exception {
+            CheckoutCommand checkout = git.checkout().setName(branch).setCreateBranch(create);
+            if (!create && git.getRepository().resolve(Constants.R_HEADS + branch) == null) {
+                // the build checks out a detached head, start the local branch from the remote one like git does
+                checkout.setCreateBranch(true).setStartPoint(Constants.DEFAULT_REMOTE_NAME + "/" + branch);
+            }
+            checkout.call();
+            return String.format("Switched to branch '%s'", branch);
+        }
+    }
+
+    private static class JGitCommitWorkingCopyCallable extends JGitCallable<String> {
+        private final String commitMessage;
+
+        private JGitCommitWorkingCopyCallable(String commitMessage, GitSCM gitSCM, TaskListener listener,
+                FilePath workingCopy) {
+            super(gitSCM, listener, workingCopy, "Git working copy commit failed");
+            this.commitMessage = commitMessage;
+        }
+
+        @Override
+        protected String invoke(Git git) throws Exception {
+            return commit(git, this, commitMessage);
+        }
+    }
+
+    private static class JGitCreateTagCallable extends JGitCallable<String> {
+        private final String tagName;
+        private final String commitMessage;
+
+        private JGitCreateTagCallable(String tagName, String commitMessage, GitSCM gitSCM, TaskListener listener,
+                FilePath workingCopy) {
+            super(gitSCM, listener, workingCopy, "Git tag creation failed");
+            this.tagName = tagName;
+            this.commitMessage = commitMessage;
+        }
+
+        @Override
+        protected String invoke(Git git) throws Exception {
+            return createTag(git, this, tagName, commitMessage);
+        }
+    }
+
+    private static String commit(Git git, JGitCallable<?> callable, String commitMessage) throws Exception {
+        PersonIdent ident = callable.getPersonIdent(git.getRepository());
+        RevCommit commit = git.commit().setAll(true).setMessage(commitMessage).setAuthor(ident)
+                .setCommitter(ident).call();
+        debuggingLogger.fine(String.format("Committed %s", commit.name()));
+        return commit.name();
+    }
+
+    private static String createTag(Git git, JGitCallable<?> callable, String tagName, String commitMessage)
+            throws Exception {
+        String escapedTagName = escapeTagName(tagName);
+        log(callable.listener, String.format("Creating tag '%s'", escapedTagName));
+        Repository repository = git.getRepository();
+        if (repository.resolve(Constants.R_TAGS + escapedTagName) != null) {
+            throw new IOException("Git tag '" + escapedTagName + "' already exists");
+        }
+        git.tag().setName(escapedTagName).setMessage(commitMessage).setTagger(callable.getPersonIdent(repository))
+                .call();
+        return escapedTagName;
+    }
+
+    private static class JGitPushCallable extends JGitCallable<PushedRefs> {
+        private final String remoteRepository;
+        private final String[] refSpecs;
+
+        private JGitPushCallable(String remoteRepository, GitSCM gitSCM, TaskListener listener, FilePath workingCopy,
+                String... refSpecs) {
+            super(gitSCM, listener, workingCopy, "Failed to push");
+            this.remoteRepository = remoteRepository;
+            this.refSpecs = refSpecs;
+        }
+
+        @Override
+        protected PushedRefs invoke(Git git) throws Exception {
+            return pushRefSpecs(git, remoteRepository, refSpecs);
+        }
+    }
+
+    private static class JGitRevertCallable extends JGitCallable<String> {
+        private final String commitIsh;
+
+        private JGitRevertCallable(String commitIsh, GitSCM gitSCM, TaskListener listener, FilePath workingCopy) {
+            super(gitSCM, listener, workingCopy, "Failed to reset working copy");
+            this.commitIsh = commitIsh;
+        }
+
+        @Override
+        protected String invoke(Git git) throws Exception {
+            log(listener, "Reverting git working copy back to initial commit: " + commitIsh);
+            git.reset().setMode(ResetCommand.ResetType.HARD).setRef(commitIsh).call();
+            return String.format("HEAD is now at %s", commitIsh);
+        }
+    }
+
+    private static class JGitDeleteLocalRefCallable extends JGitCallable<String> {
+        private final String refName;
+
+        private JGitDeleteLocalRefCallable(String refName, GitSCM gitSCM, TaskListener listener,
+                FilePath workingCopy) {
+            super(gitSCM, listener, workingCopy, "Git ref deletion failed");
+            this.refName = refName;
+        }
+
+        @Override
+        protected String invoke(Git git) throws Exception {
+            RefUpdate refUpdate = git.getRepository().updateRef(refName);
+            refUpdate.setForceUpdate(true);
+            RefUpdate.Result result = refUpdate.delete();
+            switch (result) {
+                case FORCED:
+                case FAST_FORWARD:
+                case NO_CHANGE:
+                    return String.format("Deleted %s", refName);
+                default:
+                    throw new IOException(String.format("Git ref deletion failed: '%s' %s", refName, result));
+            }
+        }
+    }
+
+    /**
+     * Commits the release version, creates the release tag and pushes the release branch and tag in one call. The
+     * sequence stops at the first failure, which is returned with the completed steps so they can be rolled back.
+     */
+    private static class JGitReleaseVersionCallable extends JGitCallable<ReleaseVersionResult> {
+        private final String commitMessage;
+        private final String tagName;
+        private final String tagComment;
+        private final String remoteRepository;
+        private final String branch;
+
+        private JGitReleaseVersionCallable(String commitMessage, String tagName, String tagComment,
+                String remoteRepository, String branch, GitSCM gitSCM, TaskListener listener,
+                FilePath workingCopy) {
+            super(gitSCM, listener, workingCopy, "Failed to commit and push the release version");
+            this.commitMessage = commitMessage;
+            this.tagName = tagName;
+            this.tagComment = tagComment;
+            this.remoteRepository = remoteRepository;
+            this.branch = branch;
+        }
+
+        @Override
+        protected ReleaseVersionResult invoke(Git git) throws Exception {
+            ReleaseVersionResult result = new ReleaseVersionResult();
+            try {
+                if (commitMessage != null) {
+                    commit(git, this, commitMessage);
+                }
+                if (tagName != null) {
+                    createTag(git, this, tagName, tagComment);
+                    result.tagCreated = true;
+                }
+                String pushedBranch = commitMessage != null ? branch : null;
+                if (pushedBranch != null || tagName != null) {
+                    log(listener, String.format("Pushing %s to '%s'", describeRefs(pushedBranch, tagName),
+                            remoteRepository));
+                    // the remote might accept some of the refs and reject others
+                    PushedRefs pushedRefs = pushRefSpecs(git, remoteRepository,
+                            createRefSpecs("", pushedBranch, tagName));
+                    result.branchPushed = pushedBranch != null && pushedRefs.isUpdated(branchRef(pushedBranch));
+                    result.tagPushed = tagName != null && pushedRefs.isUpdated(tagRef(tagName));
+                    failOnRejection(pushedRefs, "Failed to push");
+                }
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                debuggingLogger.log(Level.FINE, "Release version sequence failed", e);
+                result.errorMessage = e.getMessage();
+            }
+            return result;
+        }
+    }
+
     private static class CurrentCommitCallable implements FilePath.FileCallable<String> {
         private final FilePath workingCopy;
         private final TaskListener listener;
@@ -343,21 +803,23 @@ public class GitManager extends AbstractScmManager<GitSCM> {
         }
     }
 
-    private static class PushTagCallable implements FilePath.FileCallable<String> {
-        private final TaskListener listener;
-        private final EnvVars envVars;
-        private final String gitExe;
-        private final String tagName;
+    private static class PushRefSpecsCallable implements FilePath.FileCallable<PushedRefs> {
         private final String remoteRepository;
+        private final String[] refSpecs;
+        private final String failureMessage;
         private final FilePath workingCopy;
         private final String confName;
         private final String email;
+        private final TaskListener listener;
+        private final EnvVars envVars;
+        private final String gitExe;
 
-
-        public PushTagCallable(String tagName, String remoteRepository, GitSCM gitSCM, TaskListener listener,
-                               AbstractBuild build, FilePath workingCopy) throws IOException, InterruptedException {
-            this.tagName = tagName;
+        public PushRefSpecsCallable(String remoteRepository, String[] refSpecs, String failureMessage, GitSCM gitSCM,
+                TaskListener listener, AbstractBuild build, FilePath workingCopy)
+                throws IOException, InterruptedException {
             this.remoteRepository = remoteRepository;
+            this.refSpecs = refSpecs;
+            this.failureMessage = failureMessage;
             this.workingCopy = workingCopy;
             this.confName = gitSCM.getGitConfigNameToUse();
             this.email = gitSCM.getGitConfigEmailToUse();
@@ -366,17 +828,27 @@ public class GitManager extends AbstractScmManager<GitSCM> {
             this.listener = listener;
         }
 
-        public String invoke(File ws, VirtualChannel channel) throws IOException, InterruptedException {
+        /**
+         * @return The refs reported by the porcelain output of the push. A failed push reports the refs the remote
+         *         rejected in the message of the failure.
+         */
+        public PushedRefs invoke(File ws, VirtualChannel channel) throws IOException, InterruptedException {
+            String pushOutput;
             try {
-                String escapedTagName = tagName.replace(' ', '_');
-                log(listener, String.format("Pushing tag '%s' to '%s'", tagName, remoteRepository));
                 GitAPI git = createGitAPI(envVars, listener, gitExe, workingCopy, confName, email);
-                String pushOutput = git.launchCommand("push", remoteRepository, "refs/tags/" + escapedTagName);
-                debuggingLogger.fine(String.format("Push tag command output:%n%s", pushOutput));
-                return pushOutput;
+                ArgumentListBuilder args = new ArgumentListBuilder("push", "--porcelain", remoteRepository);
+                args.add(refSpecs);
+                pushOutput = git.launchCommand(args);
             } catch (GitException e) {
-                throw new IOException("Failed to push tag: " + e.getMessage());
+                PushedRefs pushedRefs = PushedRefs.fromPorcelain(e.getMessage());
+                if (pushedRefs.getErrorMessage() == null) {
+                    // the push failed before any ref was reported, like a connection failure
+                    throw new IOException(failureMessage + ": " + e.getMessage());
+                }
+                return pushedRefs;
             }
+            debuggingLogger.fine(String.format("Push command output:%n%s", pushOutput));
+            return PushedRefs.fromPorcelain(pushOutput);
         }
     }
 
@@ -481,42 +953,6 @@ public class GitManager extends AbstractScmManager<GitSCM> {
         }
     }
 
-    private static class DeleteRemoteBranchCallable implements FilePath.FileCallable<String> {
-        private final String branch;
-        private final String remoteRepository;
-        private final TaskListener listener;
-        private final EnvVars envVars;
-        private final String gitExe;
-        private final FilePath workingCopy;
-        private final String confName;
-        private final String email;
-
-
-        public DeleteRemoteBranchCallable(String branch, String remoteRepository, GitSCM gitSCM, TaskListener listener,
-                                          AbstractBuild build, FilePath workingCopy) throws IOException, InterruptedException {
-            this.branch = branch;
-            this.remoteRepository = remoteRepository;
-            this.workingCopy = workingCopy;
-            this.envVars = build.getEnvironment(listener);
-            this.gitExe = gitSCM.getGitExe(build.getBuiltOn(), listener);
-            this.listener = listener;
-            this.confName = gitSCM.getGitConfigNameToUse();
-            this.email = gitSCM.getGitConfigEmailToUse();
-        }
-
-        public String invoke(File ws, VirtualChannel channel) throws IOException {
-            try {
-                log(listener, String.format("Deleting remote branch '%s' on '%s'", branch, remoteRepository));
-                GitAPI git = createGitAPI(envVars, listener, gitExe, workingCopy, confName, email);
-                String pushOutput = git.launchCommand("push", remoteRepository, ":refs/heads/" + branch);
-                debuggingLogger.fine(String.format("Push command output:%n%s", pushOutput));
-                return pushOutput;
-            } catch (GitException e) {
-                throw new IOException("Failed to push: " + e.getMessage());
-            }
-        }
-    }
-
     private static class DeleteLocalTagCallable implements FilePath.FileCallable<String> {
         private final String tag;
         private final TaskListener listener;
@@ -549,39 +985,4 @@ public class GitManager extends AbstractScmManager<GitSCM> {
             }
         }
     }
-
-    private static class DeleteRemoteTagCallable implements FilePath.FileCallable<String> {
-        private final String tag;
-        private final String remoteRepository;
-        private final TaskListener listener;
-        private final EnvVars envVars;
-        private final String gitExe;
-        private final FilePath workingCopy;
-        private final String confName;
-        private final String email;
-
-        public DeleteRemoteTagCallable(String tag, String remoteRepository, GitSCM gitSCM, TaskListener listener,
-                                       AbstractBuild build, FilePath workingCopy) throws IOException, InterruptedException {
-            this.tag = tag;
-            this.remoteRepository = remoteRepository;
-            this.workingCopy = workingCopy;
-            this.envVars = build.getEnvironment(listener);
-            this.gitExe = gitSCM.getGitExe(build.getBuiltOn(), listener);
-            this.listener = listener;
-            this.confName = gitSCM.getGitConfigNameToUse();
-            this.email = gitSCM.getGitConfigEmailToUse();
-        }
-
-        public String invoke(File ws, VirtualChannel channel) throws IOException, InterruptedException {
-            try {
-                log(listener, String.format("Deleting remote tag '%s' from '%s'", tag, remoteRepository));
-                GitAPI git = createGitAPI(envVars, listener, gitExe, workingCopy, confName, email);
-                String output = git.launchCommand("push", remoteRepository, ":refs/tags/" + tag);
-                debuggingLogger.fine(String.format("Delete tag output:%n%s", output));
-                return output;
-            } catch (GitException e) {
-                throw new IOException("Git tag deletion failed: " + e.getMessage());
-            }
-        }
-    }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.release.scm.git;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The remote refs a push updated, and the refs the remote rejected. A ref that is already up to date on the remote
+ * is neither updated nor rejected, since it was not changed by the push and must not be rolled back.
+ */
+public class PushedRefs implements Serializable {
+    private final Set<String> updatedRefs = Sets.newHashSet();
+    private final List<String> rejections = Lists.newArrayList();
+
+    void updated(String remoteRef) {
+        updatedRefs.add(remoteRef);
+    }
+
+    void rejected(String remoteRef, String reason) {
+        rejections.add(String.format("'%s' %s", remoteRef, reason));
+    }
+
+    /**
+     * @param remoteRef The full name of the remote ref, for example refs/heads/master
+     * @return True if the push created, updated or deleted the ref
+     */
+    public boolean isUpdated(String remoteRef) {
+        return updatedRefs.contains(remoteRef);
+    }
+
+    /**
+     * @return A description of the rejected refs, null if no ref was rejected
+     */
+    public String getErrorMessage() {
+        if (rejections.isEmpty()) {
+            return null;
+        }
+        return "Remote refs were not updated: " + StringUtils.join(rejections, ", ");
+    }
+
+    /**
+     * Reads the output of {@code git push --porcelain}, in which each ref is reported on a line made of a status flag,
+     * the ref spec and a summary separated by tabs. Other lines, like the url of the remote, are ignored.
+     */
+    public static PushedRefs fromPorcelain(String output) {
+        PushedRefs pushedRefs = new PushedRefs();
+        if (output == null) {
+            return pushedRefs;
+        }
+        for (String line : StringUtils.split(output, "\r\n")) {
+            String[] fields = StringUtils.splitPreserveAllTokens(line, '\t');
+            if (fields.length < 2 || fields[0].length() != 1) {
+                continue;
+            }
+            String remoteRef = StringUtils.substringAfter(fields[1], ":");
+            if (StringUtils.isBlank(remoteRef)) {
+                continue;
+            }
+            String summary = fields.length > 2 ? fields[2] : "";
+            switch (fields[0].charAt(0)) {
+                case ' ':   // fast forward
+                case '+':   // forced update
+                case '-':   // deleted
+                case '*':   // new ref
+                    pushedRefs.updated(remoteRef);
+                    break;
+                case '!':
+                    pushedRefs.rejected(remoteRef, summary);
+                    break;
+                default:
+                    // '=' the ref is up to date
+                    break;
+            }
+        }
+        return pushedRefs;
+    }
+}
@@ -25,6 +25,8 @@ import org.jfrog.hudson.release.scm.AbstractScmCoordinator;
 import org.jfrog.hudson.util.ExtractorUtils;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -95,6 +97,18 @@ public class PerforceCoordinator extends AbstractScmCoordinator {
         perforce.edit(currentChangeListId, filePath);
     }
 
+    @Override
+    public void edit(FilePath root, Collection<String> relativePaths) throws IOException, InterruptedException {
+        Map<String, String> errors = perforce.edit(currentChangeListId, root, relativePaths);
+        if (!errors.isEmpty()) {
+            for (Map.Entry<String, String> error : errors.entrySet()) {
+                log("Failed to open file '" + error.getKey() + "' for editing: " + error.getValue());
+            }
+            throw new IOException(errors.size() + " out of " + relativePaths.size() +
+                    " files could not be opened for editing");
+        }
+    }
+
     public void buildCompleted() throws IOException, InterruptedException {
         if (!build.getResult().isBetterOrEqualTo(Result.SUCCESS)) {
             safeRevertWorkingCopy();
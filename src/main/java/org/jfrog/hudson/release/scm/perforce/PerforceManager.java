@@ -16,6 +16,8 @@
 
 package org.jfrog.hudson.release.scm.perforce;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import hudson.FilePath;
 import hudson.model.AbstractBuild;
 import hudson.model.TaskListener;
@@ -26,6 +28,9 @@ import org.jfrog.hudson.release.scm.AbstractScmManager;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Performs Perforce actions for the release management.
@@ -121,6 +126,22 @@ public class PerforceManager extends AbstractScmManager<PerforceSCM> {
         filePath.act(new EditFilesCallable(builder, buildListener, currentChangeListId));
     }
 
+    /**
+     * Opens several files for editing with a single connection to the perforce server, opened on the agent of the
+     * files by a single call.
+     *
+     * @param currentChangeListId The current change list id to open the files for editing at
+     * @param root                The directory of the files
+     * @param relativePaths       The paths of the files, relative to the root
+     * @return The error of every file that could not be opened, by relative path. Empty if all the files were opened
+     * @throws IOException Thrown in case the perforce server could not be reached
+     */
+    public Map<String, String> edit(int currentChangeListId, FilePath root, Collection<String> relativePaths)
+            throws IOException, InterruptedException {
+        return root.act(new EditFilesBatchCallable(builder, buildListener, currentChangeListId,
+                Lists.newArrayList(relativePaths)));
+    }
+
     public void closeConnection() throws IOException {
         perforce.closeConnection();
     }
@@ -145,6 +166,41 @@ public class PerforceManager extends AbstractScmManager<PerforceSCM> {
         }
     }
 
+    private static class EditFilesBatchCallable implements FilePath.FileCallable<Map<String, String>> {
+        private PerforceClient.Builder builder;
+        private int currentChangeListId;
+        private TaskListener listener;
+        private List<String> relativePaths;
+
+        public EditFilesBatchCallable(PerforceClient.Builder builder, TaskListener buildListener,
+                int currentChangeListId, List<String> relativePaths) {
+            this.builder = builder;
+            this.listener = buildListener;
+            this.currentChangeListId = currentChangeListId;
+            this.relativePaths = relativePaths;
+        }
+
+        public Map<String, String> invoke(File root, VirtualChannel channel) throws IOException, InterruptedException {
+            Map<String, String> errors = Maps.newLinkedHashMap();
+            PerforceClient perforce = builder.build();
+            try {
+                for (String relativePath : relativePaths) {
+                    File file = new File(root, relativePath);
+                    log(listener, "Opening file: '" + file.getAbsolutePath() + "' for editing");
+                    try {
+                        perforce.editFile(currentChangeListId, file);
+                    } catch (IOException e) {
+                        // try the other files, so all the failures are reported together
+                        errors.put(relativePath, e.getMessage());
+                    }
+                }
+            } finally {
+                perforce.closeConnection();
+            }
+            return errors;
+        }
+    }
+
     private static class CommitFilesCallable implements FilePath.FileCallable<String> {
 
         private PerforceClient.Builder builder;
@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import hudson.Extension;
+import hudson.model.PeriodicWork;
+import org.jfrog.build.client.ArtifactoryBuildInfoClient;
+import org.jfrog.build.client.ProxyConfiguration;
+import org.jfrog.hudson.ArtifactoryServer;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the build info clients of the master alive between requests, so their connections to Artifactory are reused
+ * instead of opening a new connection for every request. Clients are pooled by server and credentials, and a client
+ * is used by a single thread at a time: it is acquired from the pool and released back to it when done, instead of
+ * being shut down.
+ * <p/>
+ * The number of clients per server and credentials, in use or idle, is limited by the server configuration. Once the
+ * limit is reached, a thread acquiring a client waits for another thread to release one, unless it already holds a
+ * client of the same server and credentials, which it may be about to release only after its nested request. Clients
+ * that were idle for too long are shut down periodically. All the idle clients are shut down when the global
+ * configuration changes.
+ */
+public class ArtifactoryClientPool {
+
+    private static final long IDLE_TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+
+    /**
+     * How long to wait for a client once all the clients of the server and credentials are in use
+     */
+    private static final long ACQUIRE_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    private static final ArtifactoryClientPool instance = new ArtifactoryClientPool();
+
+    private final Map<ClientKey, KeyPool> pools = Maps.newHashMap();
+    private final Map<ArtifactoryBuildInfoClient, BorrowedClient> borrowedClients = Maps.newIdentityHashMap();
+    private int generation;
+
+    ArtifactoryClientPool() {
+    }
+
+    public static ArtifactoryClientPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return An idle client of the server and credentials, or a new client if there is none and the limit of clients
+     * is not reached. The client must be released to the pool once done.
+     * @throws IllegalStateException If no client was released in time, or if the thread was interrupted meanwhile
+     */
+    public ArtifactoryBuildInfoClient acquire(ArtifactoryServer server, String username, String password,
+            ProxyConfiguration proxyConfiguration) {
+        int maxClients = server.getMaxPooledConnections();
+        ClientKey key = new ClientKey(server, username, password, proxyConfiguration);
+        List<ArtifactoryBuildInfoClient> expired = Lists.newArrayList();
+        ArtifactoryBuildInfoClient client = null;
+        synchronized (this) {
+            long deadline = System.currentTimeMillis() + ACQUIRE_TIMEOUT;
+            KeyPool pool;
+            while (true) {
+                // the pool is removed while waiting once all its clients are released and shut down
+                pool = pools.get(key);
+                if (pool == null) {
+                    pool = new KeyPool();
+                    pools.put(key, pool);
+                }
+                client = pool.takeIdle(System.currentTimeMillis(), expired);
+                if (client != null || pool.size() < maxClients || isBorrowedByCurrentThread(key)) {
+                    break;
+                }
+                long timeout = deadline - System.currentTimeMillis();
+                if (timeout <= 0) {
+                    throw new IllegalStateException("Timed out waiting for a connection to " + server.getUrl() +
+                            ": all the " + maxClients + " pooled connections are in use.");
+                }
+                try {
+                    wait(timeout);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for a connection to " +
+                            server.getUrl(), e);
+                }
+            }
+            // the client to create is counted at once so that other threads wait for it
+            pool.borrowed++;
+        }
+        shutdownClients(expired);
+        if (client == null) {
+            try {
+                client = server.createArtifactoryClient(username, password, proxyConfiguration);
+            } catch (RuntimeException e) {
+                releaseSlot(key);
+                throw e;
+            }
+        }
+        synchronized (this) {
+            borrowedClients.put(client, new BorrowedClient(key, maxClients, generation));
+        }
+        return client;
+    }
+
+    /**
+     * Returns the client to the pool, or shuts it down if the pool of its server and credentials is full, if the
+     * configuration changed since it was acquired or if the client was not acquired from the pool.
+     */
+    public void release(ArtifactoryBuildInfoClient client) {
+        if (client == null) {
+            return;
+        }
+        synchronized (this) {
+            BorrowedClient borrowed = borrowedClients.remove(client);
+            if (borrowed != null) {
+                KeyPool pool = pools.get(borrowed.key);
+                pool.borrowed--;
+                notifyAll();
+                if (borrowed.generation == generation && pool.size() < borrowed.maxClients) {
+                    pool.idle.addFirst(new IdleClient(client, System.currentTimeMillis()));
+                    return;
+                }
+                removeIfEmpty(borrowed.key, pool);
+            }
+        }
+        client.shutdown();
+    }
+
+    /**
+     * Shuts down the clients that were idle for too long.
+     */
+    public void evictIdle() {
+        List<ArtifactoryBuildInfoClient> expired = Lists.newArrayList();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            Iterator<KeyPool> poolIterator = pools.values().iterator();
+            while (poolIterator.hasNext()) {
+                KeyPool pool = poolIterator.next();
+                Iterator<IdleClient> iterator = pool.idle.iterator();
+                while (iterator.hasNext()) {
+                    IdleClient idleClient = iterator.next();
+                    if (idleClient.isExpired(now)) {
+                        expired.add(idleClient.client);
+                        iterator.remove();
+                    }
+                }
+                if (pool.isEmpty()) {
+                    poolIterator.remove();
+                }
+            }
+        }
+        shutdownClients(expired);
+    }
+
+    /**
+     * Shuts down all the idle clients. Clients in use are shut down when they are released.
+     */
+    public void shutdown() {
+        List<ArtifactoryBuildInfoClient> clients = Lists.newArrayList();
+        synchronized (this) {
+            generation++;
+            Iterator<KeyPool> poolIterator = pools.values().iterator();
+            while (poolIterator.hasNext()) {
+                KeyPool pool = poolIterator.next();
+                for (IdleClient idleClient : pool.idle) {
+                    clients.add(idleClient.client);
+                }
+                pool.idle.clear();
+                if (pool.isEmpty()) {
+                    poolIterator.remove();
+                }
+            }
+        }
+        shutdownClients(clients);
+    }
+
+    private boolean isBorrowedByCurrentThread(ClientKey key) {
+        Thread currentThread = Thread.currentThread();
+        for (BorrowedClient borrowed : borrowedClients.values()) {
+            if (borrowed.borrower == currentThread && borrowed.key.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void releaseSlot(ClientKey key) {
+        KeyPool pool = pools.get(key);
+        pool.borrowed--;
+        notifyAll();
+        removeIfEmpty(key, pool);
+    }
+
+    private void removeIfEmpty(ClientKey key, KeyPool pool) {
+        if (pool.isEmpty()) {
+            pools.remove(key);
+        }
+    }
+
+    private void shutdownClients(List<ArtifactoryBuildInfoClient> clients) {
+        for (ArtifactoryBuildInfoClient client : clients) {
+            client.shutdown();
+        }
+    }
+
+    /**
+     * Periodically shuts down the idle clients of the pool.
+     */
+    @Extension
+    public static class IdleClientsEvictor extends PeriodicWork {
+        @Override
+        public long getRecurrencePeriod() {
+            return MIN;
+        }
+
+        @Override
+        protected void doRun() {
+            getInstance().evictIdle();
+        }
+    }
+
+    private static class ClientKey {
+        private final String url;
+        private final String username;
+        private final String password;
+        private final int timeout;
+        private final boolean bypassProxy;
+        private final String proxyHost;
+        private final int proxyPort;
+        private final String proxyUsername;
+        private final String proxyPassword;
+
+        private ClientKey(ArtifactoryServer server, String username, String password,
+                ProxyConfiguration proxyConfiguration) {
+            this.url = server.getUrl();
+            this.username = username;
+            this.password = password;
+            this.timeout = server.getTimeout();
+            this.bypassProxy = server.isBypassProxy();
+            if (proxyConfiguration != null) {
+                proxyHost = proxyConfiguration.host;
+                proxyPort = proxyConfiguration.port;
+                proxyUsername = proxyConfiguration.username;
+                proxyPassword = proxyConfiguration.password;
+            } else {
+                proxyHost = null;
+                proxyPort = 0;
+                proxyUsername = null;
+                proxyPassword = null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ClientKey)) {
+                return false;
+            }
+            ClientKey other = (ClientKey) o;
+            return timeout == other.timeout && bypassProxy == other.bypassProxy && proxyPort == other.proxyPort &&
+                    Objects.equal(url, other.url) && Objects.equal(username, other.username) &&
+                    Objects.equal(password, other.password) && Objects.equal(proxyHost, other.proxyHost) &&
+                    Objects.equal(proxyUsername, other.proxyUsername) &&
+                    Objects.equal(proxyPassword, other.proxyPassword);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(url, username, password, timeout, bypassProxy, proxyHost, proxyPort,
+                    proxyUsername, proxyPassword);
+        }
+    }
+
+    /**
+     * The clients of a single server and credentials: the idle clients, most recently used first, and the number of
+     * clients in use.
+     */
+    private static class KeyPool {
+        private final LinkedList<IdleClient> idle = new LinkedList<IdleClient>();
+        private int borrowed;
+
+        private ArtifactoryBuildInfoClient takeIdle(long now, List<ArtifactoryBuildInfoClient> expired) {
+            while (!idle.isEmpty()) {
+                // the most recently used client is the most likely to have a live connection
+                IdleClient idleClient = idle.removeFirst();
+                if (!idleClient.isExpired(now)) {
+                    return idleClient.client;
+                }
+                expired.add(idleClient.client);
+            }
+            return null;
+        }
+
+        private int size() {
+            return idle.size() + borrowed;
+        }
+
+        private boolean isEmpty() {
+            return size() == 0;
+        }
+    }
+
+    private static class IdleClient {
+        private final ArtifactoryBuildInfoClient client;
+        private final long idleSince;
+
+        private IdleClient(ArtifactoryBuildInfoClient client, long idleSince) {
+            this.client = client;
+            this.idleSince = idleSince;
+        }
+
+        private boolean isExpired(long now) {
+            return now - idleSince > IDLE_TIMEOUT;
+        }
+    }
+
+    private static class BorrowedClient {
+        private final ClientKey key;
+        private final int maxClients;
+        private final int generation;
+        private final Thread borrower = Thread.currentThread();
+
+        private BorrowedClient(ClientKey key, int maxClients, int generation) {
+            this.key = key;
+            this.maxClients = maxClients;
+            this.generation = generation;
+        }
+    }
+}
@@ -0,0 +1,495 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+import hudson.Extension;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Hudson;
+import hudson.model.PeriodicWork;
+import hudson.util.Scrambler;
+import org.jfrog.build.api.Build;
+import org.jfrog.build.client.ArtifactoryBuildInfoClient;
+import org.jfrog.build.client.ProxyConfiguration;
+import org.jfrog.hudson.ArtifactoryBuilder;
+import org.jfrog.hudson.ArtifactoryServer;
+import org.jfrog.hudson.BuildInfoResultAction;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Durable spool of the build info that is published asynchronously. The build info is written compressed to the
+ * spool directory under the Hudson home, so the build does not wait for Artifactory, and is sent by background
+ * threads in the order it was spooled, one sender per server. Build info that fails to be sent because of an IO or
+ * server error is retried with an exponential backoff, also after a restart, and is moved to the failed directory of
+ * the spool after {@link #MAX_ATTEMPTS} attempts. Build info that Artifactory refuses with a client error is moved to
+ * the failed directory at once.
+ * <p/>
+ * The {@link BuildInfoResultAction} of the build shows the delivery status of its build info.
+ */
+public class BuildInfoSpool {
+    private static final Logger log = Logger.getLogger(BuildInfoSpool.class.getName());
+
+    private static final int MAX_ATTEMPTS = 12;
+    private static final long MIN_RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+    private static final long MAX_RETRY_DELAY = TimeUnit.HOURS.toMillis(1);
+    private static final int SENDER_THREADS = 4;
+
+    private static final String BUILD_INFO_SUFFIX = ".json.gz";
+    private static final String ENTRY_SUFFIX = ".properties";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String FAILED_DIR = "failed";
+
+    private static final String SERVER_URL = "serverUrl";
+    private static final String USERNAME = "username";
+    private static final String PASSWORD = "password";
+    private static final String PROJECT_NAME = "projectName";
+    private static final String BUILD_NUMBER = "buildNumber";
+    private static final String ATTEMPTS = "attempts";
+    private static final String NEXT_ATTEMPT = "nextAttempt";
+
+    private static final BuildInfoSpool instance = new BuildInfoSpool();
+
+    private final ThreadPoolExecutor executor;
+    /**
+     * Urls of the servers that have a sender running, mapped to whether build info was spooled to the server while
+     * the sender was running
+     */
+    private final Map<String, Boolean> sendingServers = Maps.newHashMap();
+    private long lastSequence = -1;
+
+    private BuildInfoSpool() {
+        executor = new ThreadPoolExecutor(SENDER_THREADS, SENDER_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("artifactory-build-info-sender"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static BuildInfoSpool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Writes the build info to the spool and starts sending it.
+     *
+     * @param buildInfo   The build info to send
+     * @param server      The server to send the build info to
+     * @param credentials The credentials to send the build info with
+     * @param build       The build of the build info, which delivery status is updated once the build info is sent
+     */
+    public void spool(Build buildInfo, ArtifactoryServer server, Credentials credentials, AbstractBuild build)
+            throws IOException {
+        File spoolDir = getSpoolDir();
+        if (!spoolDir.isDirectory() && !spoolDir.mkdirs()) {
+            throw new IOException("Failed to create the build info spool directory " + spoolDir);
+        }
+        SpoolEntry entry = new SpoolEntry(spoolDir, String.format("%019d", nextSequence(spoolDir)));
+        boolean spooled = false;
+        try {
+            OutputStream out = new FileOutputStream(entry.getBuildInfoFile());
+            try {
+                BuildInfoUploader.writeCompressed(buildInfo, out);
+            } finally {
+                Closeables.closeQuietly(out);
+            }
+
+            entry.serverUrl = server.getUrl();
+            entry.username = credentials.getUsername();
+            entry.password = credentials.getPassword();
+            entry.projectName = build.getParent().getFullName();
+            entry.buildNumber = build.getNumber();
+            // the entry exists once its properties are written, after the build info
+            entry.save();
+            spooled = true;
+        } finally {
+            if (!spooled) {
+                entry.delete();
+            }
+        }
+
+        send(entry.serverUrl);
+    }
+
+    /**
+     * Starts sending the spooled build info of the server, unless it is already being sent.
+     */
+    public void send(String serverUrl) {
+        synchronized (sendingServers) {
+            if (sendingServers.containsKey(serverUrl)) {
+                sendingServers.put(serverUrl, true);
+                return;
+            }
+            sendingServers.put(serverUrl, false);
+        }
+        executor.execute(new Sender(serverUrl));
+    }
+
+    /**
+     * Starts sending the spooled build info of all the servers, to send the build info spooled before a restart and
+     * to retry the build info that failed to be sent.
+     */
+    public void sendAll() {
+        File spoolDir = getSpoolDir();
+        if (!spoolDir.isDirectory()) {
+            return;
+        }
+        Set<String> serverUrls = Sets.newHashSet();
+        for (SpoolEntry entry : listEntries(spoolDir)) {
+            serverUrls.add(entry.serverUrl);
+        }
+        for (String serverUrl : serverUrls) {
+            send(serverUrl);
+        }
+    }
+
+    /**
+     * @return False if the sender of the server is done, true if build info was spooled while it was running
+     */
+    private boolean isSpooledWhileSending(String serverUrl) {
+        synchronized (sendingServers) {
+            if (Boolean.TRUE.equals(sendingServers.get(serverUrl))) {
+                sendingServers.put(serverUrl, false);
+                return true;
+            }
+            sendingServers.remove(serverUrl);
+            return false;
+        }
+    }
+
+    private synchronized long nextSequence(File spoolDir) {
+        if (lastSequence < 0) {
+            // nothing is spooled before the first sequence is taken, so files without an entry are leftovers of a
+            // crash while spooling
+            deleteOrphans(spoolDir);
+            lastSequence = 0;
+            for (SpoolEntry entry : listEntries(spoolDir)) {
+                lastSequence = Math.max(lastSequence, Long.parseLong(entry.name));
+            }
+        }
+        return ++lastSequence;
+    }
+
+    private void deleteOrphans(File spoolDir) {
+        File[] files = spoolDir.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(TEMP_SUFFIX) || (name.endsWith(BUILD_INFO_SUFFIX) &&
+                        !new File(dir, name.substring(0, name.length() - BUILD_INFO_SUFFIX.length()) +
+                                ENTRY_SUFFIX).exists());
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            log.fine("Deleting orphan build info spool file " + file);
+            file.delete();
+        }
+    }
+
+    private File getSpoolDir() {
+        return new File(Hudson.getInstance().getRootDir(), "artifactory-plugin/build-info-spool");
+    }
+
+    /**
+     * @return The spooled entries, in the order they were spooled
+     */
+    private List<SpoolEntry> listEntries(File spoolDir) {
+        String[] names = spoolDir.list(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(ENTRY_SUFFIX);
+            }
+        });
+        if (names == null) {
+            return Lists.newArrayList();
+        }
+        Arrays.sort(names);
+        List<SpoolEntry> entries = Lists.newArrayListWithCapacity(names.length);
+        for (String name : names) {
+            SpoolEntry entry = new SpoolEntry(spoolDir, name.substring(0, name.length() - ENTRY_SUFFIX.length()));
+            try {
+                entry.load();
+                entries.add(entry);
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed to read spooled build info entry " + name, e);
+            }
+        }
+        return entries;
+    }
+
+    private void updateDeliveryStatus(SpoolEntry entry, BuildInfoResultAction.DeliveryStatus status) {
+        AbstractProject<?, ?> project = Hudson.getInstance().getItemByFullName(entry.projectName,
+                AbstractProject.class);
+        if (project == null) {
+            return;
+        }
+        AbstractBuild<?, ?> build = project.getBuildByNumber(entry.buildNumber);
+        if (build == null) {
+            return;
+        }
+        BuildInfoResultAction action = build.getAction(BuildInfoResultAction.class);
+        if (action == null) {
+            return;
+        }
+        action.setDeliveryStatus(status);
+        try {
+            build.save();
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Failed to save the build info delivery status of " + build, e);
+        }
+    }
+
+    private static long getRetryDelay(int attempts) {
+        long delay = MIN_RETRY_DELAY << Math.min(attempts - 1, 30);
+        return Math.min(delay, MAX_RETRY_DELAY);
+    }
+
+    /**
+     * Sends the spooled build info of a server, in the order it was spooled. Stops at the first build info that is
+     * not due to be sent yet, to keep the order of the builds in Artifactory.
+     */
+    private class Sender implements Runnable {
+        private final String serverUrl;
+
+        private Sender(String serverUrl) {
+            this.serverUrl = serverUrl;
+        }
+
+        public void run() {
+            do {
+                try {
+                    sendEntries();
+                } catch (RuntimeException e) {
+                    log.log(Level.WARNING, "Failed to send the spooled build info to " + serverUrl, e);
+                }
+            } while (isSpooledWhileSending(serverUrl));
+        }
+
+        private void sendEntries() {
+            for (SpoolEntry entry : listEntries(getSpoolDir())) {
+                if (!serverUrl.equals(entry.serverUrl)) {
+                    continue;
+                }
+                if (entry.nextAttempt > System.currentTimeMillis() || !send(entry)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * @return True if the entry is done with, false if it should be retried later
+         */
+        private boolean send(SpoolEntry entry) {
+            ArtifactoryBuilder.DescriptorImpl descriptor = (ArtifactoryBuilder.DescriptorImpl)
+                    Hudson.getInstance().getDescriptor(ArtifactoryBuilder.class);
+            ArtifactoryServer server = descriptor.getArtifactoryServer(serverUrl);
+            if (server == null) {
+                log.warning("Artifactory server " + serverUrl + " is no longer configured, build info of " +
+                        entry.projectName + " #" + entry.buildNumber + " is not sent");
+                fail(entry);
+                return true;
+            }
+
+            ProxyConfiguration proxyConfiguration = server.createProxyConfiguration(Hudson.getInstance().proxy);
+            ArtifactoryBuildInfoClient client = null;
+            try {
+                client = server.acquireArtifactoryClient(entry.username, entry.password, proxyConfiguration);
+                new BuildInfoUploader(server, new Credentials(entry.username, entry.password), proxyConfiguration)
+                        .upload(entry.getBuildInfoFile(), client);
+                entry.delete();
+                updateDeliveryStatus(entry, null);
+                return true;
+            } catch (BuildInfoUploader.StatusException e) {
+                if (e.isPermanent()) {
+                    // the same build info would be refused again, and would hold back the build info after it
+                    log.log(Level.SEVERE, "Artifactory " + serverUrl + " refused the build info of " +
+                            entry.projectName + " #" + entry.buildNumber, e);
+                    fail(entry);
+                    return true;
+                }
+                return retryLater(entry, e);
+            } catch (IOException e) {
+                return retryLater(entry, e);
+            } catch (RuntimeException e) {
+                return retryLater(entry, e);
+            } finally {
+                if (client != null) {
+                    server.releaseArtifactoryClient(client);
+                }
+            }
+        }
+
+        /**
+         * @return True if the entry failed too many times and is done with, false if it should be retried later
+         */
+        private boolean retryLater(SpoolEntry entry, Exception e) {
+            entry.attempts++;
+            if (entry.attempts >= MAX_ATTEMPTS) {
+                log.log(Level.SEVERE, "Failed to send the build info of " + entry.projectName + " #" +
+                        entry.buildNumber + " to " + serverUrl + " after " + entry.attempts + " attempts", e);
+                fail(entry);
+                return true;
+            }
+            log.log(Level.WARNING, "Failed to send the build info of " + entry.projectName + " #" +
+                    entry.buildNumber + " to " + serverUrl + ", will retry", e);
+            entry.nextAttempt = System.currentTimeMillis() + getRetryDelay(entry.attempts);
+            try {
+                entry.save();
+            } catch (IOException saveException) {
+                log.log(Level.WARNING, "Failed to save spooled build info entry " + entry.name, saveException);
+            }
+            return false;
+        }
+
+        private void fail(SpoolEntry entry) {
+            entry.moveTo(new File(entry.spoolDir, FAILED_DIR));
+            updateDeliveryStatus(entry, BuildInfoResultAction.DeliveryStatus.FAILED);
+        }
+    }
+
+    /**
+     * A spooled build info, and the properties it is sent with.
+     */
+    private static class SpoolEntry {
+        private final File spoolDir;
+        private final String name;
+        private String serverUrl;
+        private String username;
+        private String password;
+        private String projectName;
+        private int buildNumber;
+        private int attempts;
+        private long nextAttempt;
+
+        private SpoolEntry(File spoolDir, String name) {
+            this.spoolDir = spoolDir;
+            this.name = name;
+        }
+
+        private File getBuildInfoFile() {
+            return new File(spoolDir, name + BUILD_INFO_SUFFIX);
+        }
+
+        private File getEntryFile() {
+            return new File(spoolDir, name + ENTRY_SUFFIX);
+        }
+
+        private void load() throws IOException {
+            Properties properties = new Properties();
+            InputStream in = new FileInputStream(getEntryFile());
+            try {
+                properties.load(in);
+            } finally {
+                Closeables.closeQuietly(in);
+            }
+            serverUrl = properties.getProperty(SERVER_URL);
+            username = properties.getProperty(USERNAME);
+            String scrambledPassword = properties.getProperty(PASSWORD);
+            password = scrambledPassword != null ? Scrambler.descramble(scrambledPassword) : null;
+            projectName = properties.getProperty(PROJECT_NAME);
+            try {
+                buildNumber = Integer.parseInt(properties.getProperty(BUILD_NUMBER));
+                attempts = Integer.parseInt(properties.getProperty(ATTEMPTS, "0"));
+                nextAttempt = Long.parseLong(properties.getProperty(NEXT_ATTEMPT, "0"));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid spooled build info entry: " + e.getMessage());
+            }
+            if (serverUrl == null || projectName == null) {
+                throw new IOException("Invalid spooled build info entry: missing server or project");
+            }
+        }
+
+        /**
+         * Writes the properties to a temporary file first, so a crash never leaves a partially written entry.
+         */
+        private void save() throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty(SERVER_URL, serverUrl);
+            if (username != null) {
+                properties.setProperty(USERNAME, username);
+            }
+            if (password != null) {
+                properties.setProperty(PASSWORD, Scrambler.scramble(password));
+            }
+            properties.setProperty(PROJECT_NAME, projectName);
+            properties.setProperty(BUILD_NUMBER, String.valueOf(buildNumber));
+            properties.setProperty(ATTEMPTS, String.valueOf(attempts));
+            properties.setProperty(NEXT_ATTEMPT, String.valueOf(nextAttempt));
+
+            File tempFile = new File(spoolDir, name + ENTRY_SUFFIX + TEMP_SUFFIX);
+            OutputStream out = new FileOutputStream(tempFile);
+            try {
+                properties.store(out, null);
+            } finally {
+                Closeables.closeQuietly(out);
+            }
+            File entryFile = getEntryFile();
+            if (!tempFile.renameTo(entryFile)) {
+                // renameTo does not replace an existing file on all platforms
+                entryFile.delete();
+                if (!tempFile.renameTo(entryFile)) {
+                    throw new IOException("Failed to write spooled build info entry " + entryFile);
+                }
+            }
+        }
+
+        private void delete() {
+            getEntryFile().delete();
+            getBuildInfoFile().delete();
+        }
+
+        private void moveTo(File dir) {
+            dir.mkdirs();
+            getBuildInfoFile().renameTo(new File(dir, getBuildInfoFile().getName()));
+            getEntryFile().renameTo(new File(dir, getEntryFile().getName()));
+        }
+    }
+
+    /**
+     * Sends the build info spooled before a restart, and retries the build info that failed to be sent.
+     */
+    @Extension
+    public static class SpoolSender extends PeriodicWork {
+        @Override
+        public long getRecurrencePeriod() {
+            return MIN;
+        }
+
+        @Override
+        protected void doRun() {
+            getInstance().sendAll();
+        }
+    }
+}
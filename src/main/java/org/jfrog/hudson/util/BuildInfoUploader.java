@@ -0,0 +1,261 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.annotate.JsonSerialize;
+import org.codehaus.jackson.map.introspect.JacksonAnnotationIntrospector;
+import org.jfrog.build.api.Build;
+import org.jfrog.build.client.ArtifactoryBuildInfoClient;
+import org.jfrog.build.client.ProxyConfiguration;
+import org.jfrog.hudson.ArtifactoryServer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Sends the build info to Artifactory as gzip compressed JSON, serialized straight into the request body. Unlike the
+ * build info client, which serializes the whole build info to a string before sending it, the memory used does not
+ * depend on the size of the build info.
+ * <p/>
+ * Servers that do not accept compressed requests, and servers older than 2.2.3 which require the client to drop the
+ * build info fields they do not know, are sent the build info through the build info client.
+ */
+public class BuildInfoUploader {
+
+    private static final String BUILD_REST_URL = "/api/build";
+    private static final String BUILD_INFO_CONTENT_TYPE = "application/vnd.org.jfrog.artifactory+json";
+    private static final int SENT = 0;
+    private static final int NOT_SENT = -1;
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int GZIP_BUFFER_SIZE = 8 * 1024;
+    private static final Pattern CLIENT_STATUS_PATTERN = Pattern.compile("HTTP response code: (\\d{3})");
+
+    /**
+     * Urls of the servers that refused a compressed build info
+     */
+    private static final Set<String> uncompressedServerUrls =
+            Sets.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private final ArtifactoryServer server;
+    private final Credentials credentials;
+    private final HttpConnectionFactory connectionFactory;
+
+    public BuildInfoUploader(ArtifactoryServer server, Credentials credentials,
+            ProxyConfiguration proxyConfiguration) {
+        this.server = server;
+        this.credentials = credentials;
+        this.connectionFactory = new HttpConnectionFactory(server, credentials.getUsername(),
+                credentials.getPassword(), proxyConfiguration);
+    }
+
+    /**
+     * @param buildInfo The build info to send
+     * @param client    The client to send the build info with if the server does not accept compressed requests
+     */
+    public void upload(final Build buildInfo, ArtifactoryBuildInfoClient client) throws IOException {
+        int status = tryCompressedUpload(new RequestBody() {
+            public void writeTo(OutputStream out) throws IOException {
+                writeCompressed(buildInfo, out);
+            }
+        });
+        if (status != SENT) {
+            sendUncompressed(buildInfo, client, status);
+        }
+    }
+
+    /**
+     * @param compressedBuildInfo A build info written by {@link #writeCompressed(Build, OutputStream)}
+     * @param client              The client to send the build info with if the server does not accept compressed
+     *                            requests
+     */
+    public void upload(final File compressedBuildInfo, ArtifactoryBuildInfoClient client) throws IOException {
+        int status = tryCompressedUpload(new RequestBody() {
+            public void writeTo(OutputStream out) throws IOException {
+                try {
+                    Files.copy(compressedBuildInfo, out);
+                } finally {
+                    out.close();
+                }
+            }
+        });
+        if (status != SENT) {
+            sendUncompressed(readCompressed(compressedBuildInfo), client, status);
+        }
+    }
+
+    /**
+     * @param compressedStatus The status of the refused compressed request, {@link #NOT_SENT} if it was not sent
+     */
+    private void sendUncompressed(Build buildInfo, ArtifactoryBuildInfoClient client, int compressedStatus)
+            throws IOException {
+        if (compressedStatus == HttpURLConnection.HTTP_UNSUPPORTED_TYPE) {
+            uncompressedServerUrls.add(server.getUrl());
+        }
+        sendWithClient(buildInfo, client);
+        if (compressedStatus == HttpURLConnection.HTTP_BAD_REQUEST) {
+            // the same build info is accepted uncompressed, so it is the compressed request the server does not read
+            uncompressedServerUrls.add(server.getUrl());
+        }
+    }
+
+    private void sendWithClient(Build buildInfo, ArtifactoryBuildInfoClient client) throws IOException {
+        try {
+            client.sendBuildInfo(buildInfo);
+        } catch (IOException e) {
+            // the client reports the status code only in the message
+            Matcher matcher = CLIENT_STATUS_PATTERN.matcher(String.valueOf(e.getMessage()));
+            if (matcher.find()) {
+                throw new StatusException(Integer.parseInt(matcher.group(1)), e.getMessage(), e);
+            }
+            throw e;
+        }
+    }
+
+    private boolean isCompressedUploadSupported() throws IOException {
+        if (uncompressedServerUrls.contains(server.getUrl())) {
+            return false;
+        }
+        return server.getCapabilities(credentials).isCompressedBuildInfoSupported();
+    }
+
+    /**
+     * @return {@link #SENT} if the build info was sent, otherwise the status with which the server refused the
+     *         compressed request, or {@link #NOT_SENT} if the server is not known to accept compressed requests
+     */
+    private int tryCompressedUpload(RequestBody body) throws IOException {
+        if (!isCompressedUploadSupported()) {
+            return NOT_SENT;
+        }
+        HttpURLConnection connection = connectionFactory.openConnection(server.getUrl() + BUILD_REST_URL);
+        try {
+            connection.setRequestMethod("PUT");
+            connection.setDoOutput(true);
+            connection.setChunkedStreamingMode(CHUNK_SIZE);
+            connection.setRequestProperty("Content-Type", BUILD_INFO_CONTENT_TYPE);
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            body.writeTo(connection.getOutputStream());
+
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_OK || status == HttpURLConnection.HTTP_CREATED ||
+                    status == HttpURLConnection.HTTP_NO_CONTENT) {
+                return SENT;
+            }
+            if (status == HttpURLConnection.HTTP_UNSUPPORTED_TYPE || status == HttpURLConnection.HTTP_BAD_REQUEST) {
+                // a bad request might also be a compressed request that is not understood, the client reports the
+                // error if the build info itself is invalid
+                return status;
+            }
+            throw new StatusException(status, "Failed to send build info. Status code: " + status + " " +
+                    connection.getResponseMessage(), null);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Writes the build info as gzip compressed JSON to the given stream, and closes the stream.
+     */
+    public static void writeCompressed(Build buildInfo, OutputStream out) throws IOException {
+        GZIPOutputStream gzipOut = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+        JsonGenerator generator = createJsonFactory().createJsonGenerator(gzipOut, JsonEncoding.UTF8);
+        try {
+            generator.writeObject(buildInfo);
+        } finally {
+            // closes the compressed stream, which writes the gzip trailer
+            generator.close();
+        }
+    }
+
+    /**
+     * Reads a build info written by {@link #writeCompressed(Build, OutputStream)}.
+     */
+    public static Build readCompressed(File compressedBuildInfo) throws IOException {
+        InputStream in = new GZIPInputStream(new FileInputStream(compressedBuildInfo), GZIP_BUFFER_SIZE);
+        try {
+            JsonFactory jsonFactory = createJsonFactory();
+            ((ObjectMapper) jsonFactory.getCodec()).getDeserializationConfig()
+                    .set(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+            JsonParser parser = jsonFactory.createJsonParser(in);
+            return parser.readValueAs(Build.class);
+        } finally {
+            Closeables.closeQuietly(in);
+        }
+    }
+
+    /**
+     * @return A JSON factory configured like the one of the build info client
+     */
+    static JsonFactory createJsonFactory() {
+        JsonFactory jsonFactory = new JsonFactory();
+        ObjectMapper mapper = new ObjectMapper(jsonFactory);
+        mapper.getSerializationConfig().setAnnotationIntrospector(new JacksonAnnotationIntrospector());
+        mapper.getSerializationConfig().setSerializationInclusion(JsonSerialize.Inclusion.NON_NULL);
+        jsonFactory.setCodec(mapper);
+        return jsonFactory;
+    }
+
+    /**
+     * Writes the compressed body of a build info request, and closes the stream.
+     */
+    private interface RequestBody {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Failure to send a build info that Artifactory answered with an error status.
+     */
+    public static class StatusException extends IOException {
+        private final int status;
+
+        public StatusException(int status, String message, Throwable cause) {
+            super(message, cause);
+            this.status = status;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        /**
+         * @return True if Artifactory refused the build info itself, so sending it again fails the same way
+         */
+        public boolean isPermanent() {
+            return status >= 400 && status < 500 && status != HttpURLConnection.HTTP_CLIENT_TIMEOUT &&
+                    status != TOO_MANY_REQUESTS;
+        }
+    }
+}
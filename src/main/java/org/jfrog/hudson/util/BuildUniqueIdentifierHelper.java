@@ -1,10 +1,13 @@
 package org.jfrog.hudson.util;
 
+import com.google.common.collect.Lists;
 import hudson.model.*;
 import org.jfrog.hudson.ArtifactoryRedeployPublisher;
 import org.jfrog.hudson.action.ActionableHelper;
+import org.jfrog.hudson.action.RootBuildAction;
 import org.jfrog.hudson.gradle.ArtifactoryGradleConfigurator;
 
+import java.util.LinkedList;
 import java.util.logging.Logger;
 
 
@@ -30,18 +33,71 @@ public class BuildUniqueIdentifierHelper {
      * @return The root build with isPassIdentifiedDownstream active. Null if no upstream or non is found.
      */
     public static AbstractBuild<?, ?> getRootBuild(AbstractBuild<?, ?> currentBuild) {
-        AbstractBuild<?, ?> rootBuild = null;
-        AbstractBuild<?, ?> parentBuild = getUpstreamBuild(currentBuild);
-        while (parentBuild != null) {
-            if (isPassIdentifiedDownstream(parentBuild)) {
-                rootBuild = parentBuild;
-            }
-            parentBuild = getUpstreamBuild(parentBuild);
+        RootBuildAction rootBuildAction = getRootBuildAction(currentBuild);
+        if (!rootBuildAction.hasRootBuild()) {
+            return null;
         }
-        if (rootBuild == null && isPassIdentifiedDownstream(currentBuild)) {
+        if (rootBuildAction.getRootBuildNumber() == currentBuild.getNumber() &&
+                rootBuildAction.getRootProjectName().equals(currentBuild.getProject().getFullName())) {
             return currentBuild;
         }
-        return rootBuild;
+        AbstractProject<?, ?> rootProject = getProject(rootBuildAction.getRootProjectName());
+        return rootProject != null ? rootProject.getBuildByNumber(rootBuildAction.getRootBuildNumber()) : null;
+    }
+
+    /**
+     * Get the identifier of the root build of the current build, without loading the root build.
+     *
+     * @param currentBuild The current build.
+     * @return The identifier of the root build. Null if no root build is found.
+     * @see #getRootBuild(hudson.model.AbstractBuild)
+     */
+    public static String getRootBuildIdentifier(AbstractBuild<?, ?> currentBuild) {
+        return getRootBuildAction(currentBuild).getUpstreamIdentifier();
+    }
+
+    /**
+     * Resolves the root build of the current build once and remembers it on the build. The upstream chain is walked
+     * only up to the closest build whose root is already resolved, which is usually the direct upstream build.
+     */
+    private static RootBuildAction getRootBuildAction(AbstractBuild<?, ?> currentBuild) {
+        LinkedList<AbstractBuild<?, ?>> unresolvedBuilds = Lists.newLinkedList();
+        RootBuildAction upstreamAction = null;
+        AbstractBuild<?, ?> build = currentBuild;
+        while (build != null) {
+            upstreamAction = build.getAction(RootBuildAction.class);
+            if (upstreamAction != null) {
+                break;
+            }
+            unresolvedBuilds.addFirst(build);
+            build = getUpstreamBuild(build);
+        }
+        // resolve from the furthest build down to the current build
+        for (AbstractBuild<?, ?> unresolvedBuild : unresolvedBuilds) {
+            upstreamAction = addRootBuildAction(unresolvedBuild, upstreamAction);
+        }
+        return upstreamAction;
+    }
+
+    private static RootBuildAction addRootBuildAction(AbstractBuild<?, ?> build, RootBuildAction upstreamAction) {
+        RootBuildAction rootBuildAction;
+        if (upstreamAction != null && upstreamAction.hasRootBuild()) {
+            rootBuildAction = new RootBuildAction(upstreamAction.getRootProjectName(),
+                    upstreamAction.getRootBuildNumber(), upstreamAction.getUpstreamIdentifier());
+        } else if (isPassIdentifiedDownstream(build)) {
+            rootBuildAction = new RootBuildAction(build.getProject().getFullName(), build.getNumber(),
+                    getUpstreamIdentifier(build));
+        } else {
+            rootBuildAction = new RootBuildAction(null, 0, null);
+        }
+        synchronized (build) {
+            RootBuildAction existingAction = build.getAction(RootBuildAction.class);
+            if (existingAction != null) {
+                return existingAction;
+            }
+            build.getActions().add(rootBuildAction);
+        }
+        return rootBuildAction;
     }
 
     private static AbstractBuild<?, ?> getUpstreamBuild(AbstractBuild<?, ?> build) {
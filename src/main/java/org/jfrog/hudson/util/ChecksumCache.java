@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Maps;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Persistent index of file checksums, keyed by the absolute path of a file and valid as long as the size and the
+ * last modified time of the file did not change. The index is kept in memory with LRU eviction and stored in a single
+ * file under the given directory.
+ * <p/>
+ * There is a single instance per directory in every JVM, so concurrent builds on the same node share the same index.
+ */
+public class ChecksumCache {
+    private static final Logger log = Logger.getLogger(ChecksumCache.class.getName());
+
+    private static final String INDEX_FILE_NAME = "checksums.idx";
+    private static final int DEFAULT_MAX_ENTRIES = 20000;
+
+    private static final Map<File, ChecksumCache> instances = Maps.newHashMap();
+
+    private final File indexFile;
+    private final LinkedHashMap<String, IndexEntry> entries;
+    private boolean loaded;
+    private boolean dirty;
+
+    ChecksumCache(File directory, final int maxEntries) {
+        this.indexFile = new File(directory, INDEX_FILE_NAME);
+        this.entries = new LinkedHashMap<String, IndexEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IndexEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * @param directory The directory of the index file
+     * @return The checksum cache stored in the given directory
+     */
+    public static ChecksumCache getInstance(File directory) {
+        File key = directory.getAbsoluteFile();
+        synchronized (instances) {
+            ChecksumCache cache = instances.get(key);
+            if (cache == null) {
+                cache = new ChecksumCache(key, DEFAULT_MAX_ENTRIES);
+                instances.put(key, cache);
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Returns the checksums of the given file, calculating them only if the file is not in the index or was changed
+     * since it was indexed.
+     */
+    public ChecksumCalculator.Checksums getChecksums(File file) throws IOException {
+        ChecksumCalculator.Checksums checksums = getCachedChecksums(file);
+        if (checksums == null) {
+            long size = file.length();
+            long lastModified = file.lastModified();
+            checksums = ChecksumCalculator.calculateChecksums(file);
+            put(file, size, lastModified, checksums);
+        }
+        return checksums;
+    }
+
+    /**
+     * Returns the checksums of the given files, calculating the checksums of the files missing from the index using up
+     * to the given number of threads.
+     */
+    public Map<File, ChecksumCalculator.Checksums> getChecksums(Collection<File> files, int threads)
+            throws IOException, InterruptedException {
+        Map<File, ChecksumCalculator.Checksums> result = Maps.newHashMap();
+        Map<File, FileState> missing = Maps.newHashMap();
+        for (File file : files) {
+            ChecksumCalculator.Checksums checksums = getCachedChecksums(file);
+            if (checksums != null) {
+                result.put(file, checksums);
+            } else {
+                missing.put(file, new FileState(file));
+            }
+        }
+        Map<File, ChecksumCalculator.Checksums> calculated =
+                ChecksumCalculator.calculateChecksums(missing.keySet(), threads);
+        for (Map.Entry<File, ChecksumCalculator.Checksums> entry : calculated.entrySet()) {
+            FileState state = missing.get(entry.getKey());
+            put(entry.getKey(), state.size, state.lastModified, entry.getValue());
+        }
+        result.putAll(calculated);
+        return result;
+    }
+
+    /**
+     * @return The indexed checksums of the file if it was not changed since it was indexed, null otherwise
+     */
+    public synchronized ChecksumCalculator.Checksums getCachedChecksums(File file) {
+        ensureLoaded();
+        IndexEntry entry = entries.get(file.getAbsolutePath());
+        if (entry != null && entry.size == file.length() && entry.lastModified == file.lastModified()) {
+            return entry.checksums;
+        }
+        return null;
+    }
+
+    /**
+     * Indexes the checksums of the given file with its current size and last modified time. The checksums must be of
+     * the current content of the file, like checksums calculated while the file was written.
+     */
+    public void put(File file, ChecksumCalculator.Checksums checksums) {
+        put(file, file.length(), file.lastModified(), checksums);
+    }
+
+    /**
+     * Indexes the checksums of the given file, unless the file was changed while its checksums were calculated.
+     *
+     * @param size         The size of the file before its checksums were calculated
+     * @param lastModified The last modified time of the file before its checksums were calculated
+     */
+    public synchronized void put(File file, long size, long lastModified, ChecksumCalculator.Checksums checksums) {
+        if (file.length() != size || file.lastModified() != lastModified) {
+            log.fine("Not caching the checksums of " + file + " since it was changed while they were calculated");
+            return;
+        }
+        ensureLoaded();
+        entries.put(file.getAbsolutePath(), new IndexEntry(size, lastModified, checksums));
+        dirty = true;
+    }
+
+    /**
+     * Writes the index to disk if it was changed. The index is written to a temporary file first and then renamed, so
+     * readers never see a partially written index.
+     */
+    public synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        File parent = indexFile.getParentFile();
+        if (!parent.exists() && !parent.mkdirs()) {
+            log.warning("Could not create the checksum cache directory " + parent);
+            return;
+        }
+        BufferedWriter writer = null;
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(INDEX_FILE_NAME, ".tmp", parent);
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), "UTF-8"));
+            for (Map.Entry<String, IndexEntry> mapEntry : entries.entrySet()) {
+                IndexEntry entry = mapEntry.getValue();
+                writer.write(mapEntry.getKey() + "\t" + entry.size + "\t" + entry.lastModified + "\t" +
+                        entry.checksums.getMd5() + "\t" + entry.checksums.getSha1());
+                writer.newLine();
+            }
+            writer.close();
+            writer = null;
+            if (indexFile.exists() && !indexFile.delete()) {
+                throw new IOException("Could not replace " + indexFile);
+            }
+            if (!tempFile.renameTo(indexFile)) {
+                throw new IOException("Could not rename " + tempFile + " to " + indexFile);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Could not save the checksum cache: " + e.getMessage());
+        } finally {
+            IOUtils.closeQuietly(writer);
+            if (tempFile != null && tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!indexFile.isFile()) {
+            return;
+        }
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = StringUtils.split(line, '\t');
+                if (fields.length == 5) {
+                    entries.put(fields[0], new IndexEntry(Long.parseLong(fields[1]), Long.parseLong(fields[2]),
+                            new ChecksumCalculator.Checksums(fields[3], fields[4])));
+                }
+            }
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Could not load the checksum cache: " + e.getMessage());
+        } catch (NumberFormatException e) {
+            log.log(Level.WARNING, "Ignoring the corrupted checksum cache " + indexFile);
+            entries.clear();
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+    }
+
+    /**
+     * Size and last modified time of a file before its checksums are calculated
+     */
+    private static class FileState {
+        private final long size;
+        private final long lastModified;
+
+        private FileState(File file) {
+            this.size = file.length();
+            this.lastModified = file.lastModified();
+        }
+    }
+
+    private static class IndexEntry {
+        private final long size;
+        private final long lastModified;
+        private final ChecksumCalculator.Checksums checksums;
+
+        private IndexEntry(long size, long lastModified, ChecksumCalculator.Checksums checksums) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksums = checksums;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates the MD5 and SHA1 checksums of files in a single read of each file. Several files can be hashed in
+ * parallel by a pool of daemon threads that is shared by all the callers in the JVM.
+ */
+public class ChecksumCalculator {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Hashing is bound by the processors, so the callers share a single pool sized by the processors, which threads
+     * stop once idle
+     */
+    private static final ThreadPoolExecutor executor;
+
+    static {
+        int processors = getDefaultThreads();
+        executor = new ThreadPoolExecutor(processors, processors, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("artifactory-checksums"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private ChecksumCalculator() {
+        // utility class
+        throw new IllegalAccessError();
+    }
+
+    /**
+     * Calculates the checksums of a single file in the calling thread.
+     */
+    public static Checksums calculateChecksums(File file) throws IOException {
+        MessageDigest md5 = createDigest("MD5");
+        MessageDigest sha1 = createDigest("SHA-1");
+        byte[] buffer = new byte[BUFFER_SIZE];
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                md5.update(buffer, 0, read);
+                sha1.update(buffer, 0, read);
+            }
+        } finally {
+            IOUtils.closeQuietly(inputStream);
+        }
+        return new Checksums(Hex.encodeHexString(md5.digest()), Hex.encodeHexString(sha1.digest()));
+    }
+
+    /**
+     * Writes the content of the stream to the target file and calculates its checksums while the content is written,
+     * so the file is never read back. The stream is not closed.
+     */
+    public static Checksums copyWithChecksums(InputStream in, File target) throws IOException {
+        MessageDigest md5 = createDigest("MD5");
+        MessageDigest sha1 = createDigest("SHA-1");
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        OutputStream outputStream = new FileOutputStream(target);
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                md5.update(buffer, 0, read);
+                sha1.update(buffer, 0, read);
+                outputStream.write(buffer, 0, read);
+            }
+            outputStream.close();
+        } finally {
+            IOUtils.closeQuietly(outputStream);
+        }
+        return new Checksums(Hex.encodeHexString(md5.digest()), Hex.encodeHexString(sha1.digest()));
+    }
+
+    /**
+     * Calculates the checksums of the given files using up to the given number of threads of the shared pool.
+     *
+     * @return Map of the files to their checksums
+     */
+    public static Map<File, Checksums> calculateChecksums(Collection<File> files, int threads)
+            throws IOException, InterruptedException {
+        Map<File, Checksums> result = Maps.newHashMap();
+        if (threads < 2 || files.size() < 2) {
+            for (File file : files) {
+                result.put(file, calculateChecksums(file));
+            }
+            return result;
+        }
+
+        CompletionService<FileChecksums> completionService = new ExecutorCompletionService<FileChecksums>(executor);
+        List<Future<FileChecksums>> futures = Lists.newArrayList();
+        int maxRunning = Math.min(threads, executor.getMaximumPoolSize());
+        try {
+            Iterator<File> iterator = files.iterator();
+            int running = 0;
+            while (iterator.hasNext() || running > 0) {
+                // keeps up to the given number of files of this call in the shared pool
+                while (iterator.hasNext() && running < maxRunning) {
+                    final File file = iterator.next();
+                    futures.add(completionService.submit(new Callable<FileChecksums>() {
+                        public FileChecksums call() throws IOException {
+                            return new FileChecksums(file, calculateChecksums(file));
+                        }
+                    }));
+                    running++;
+                }
+                try {
+                    FileChecksums fileChecksums = completionService.take().get();
+                    result.put(fileChecksums.file, fileChecksums.checksums);
+                    running--;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw (IOException) e.getCause();
+                    }
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            // cancels the files that are not done after a failure
+            for (Future<FileChecksums> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The number of threads to use for hashing on the current machine
+     */
+    public static int getDefaultThreads() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private static MessageDigest createDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            // MD5 and SHA-1 are available on every Java platform
+            throw new IllegalStateException("Could not find checksum algorithm " + algorithm, e);
+        }
+    }
+
+    private static class FileChecksums {
+        private final File file;
+        private final Checksums checksums;
+
+        private FileChecksums(File file, Checksums checksums) {
+            this.file = file;
+            this.checksums = checksums;
+        }
+    }
+
+    /**
+     * The checksums of a single file as lower case hex strings.
+     */
+    public static class Checksums implements Serializable {
+        private final String md5;
+        private final String sha1;
+
+        public Checksums(String md5, String sha1) {
+            this.md5 = md5;
+            this.sha1 = sha1;
+        }
+
+        public String getMd5() {
+            return md5;
+        }
+
+        public String getSha1() {
+            return sha1;
+        }
+    }
+}
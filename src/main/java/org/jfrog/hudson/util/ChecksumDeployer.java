@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.io.Closeables;
+import hudson.model.BuildListener;
+import org.apache.commons.lang.StringUtils;
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.jfrog.build.client.DeployDetails;
+import org.jfrog.build.client.ProxyConfiguration;
+import org.jfrog.hudson.ArtifactoryServer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.util.Map;
+
+/**
+ * Deploys artifacts by checksum: a PUT request without content that carries the checksums of the artifact. Artifactory
+ * creates the artifact from the content it already stores under the same checksum and answers with 404 when the
+ * content is unknown, in which case the caller should deploy the file itself.
+ * <p/>
+ * A server that ignores the checksum headers stores an empty artifact instead, hence deploying by checksum is enabled
+ * only for servers known to support it, and an artifact is considered deployed only if the checksum the server answers
+ * with is the checksum of the file. Otherwise the caller deploys the file, which replaces the empty artifact.
+ * <p/>
+ * The build info client in use does not support this kind of deployment, hence the request is sent directly.
+ */
+public class ChecksumDeployer {
+
+    /**
+     * Files smaller than this size are cheaper to upload than to try to deploy by checksum first
+     */
+    private static final long MIN_CHECKSUM_DEPLOY_SIZE = 10 * 1024;
+
+    private final ArtifactoryServer server;
+    private final HttpConnectionFactory connectionFactory;
+
+    public ChecksumDeployer(ArtifactoryServer server, String username, String password,
+            ProxyConfiguration proxyConfiguration) {
+        this.server = server;
+        this.connectionFactory = new HttpConnectionFactory(server, username, password, proxyConfiguration);
+    }
+
+    /**
+     * Tells whether to deploy by checksum to the server: the server is configured so and supports it, according to
+     * its cached capabilities. Called on the master.
+     */
+    public static boolean isEnabled(ArtifactoryServer server, Credentials credentials, BuildListener listener) {
+        if (!server.isChecksumDeploy()) {
+            return false;
+        }
+        try {
+            if (server.getCapabilities(credentials).isChecksumDeploySupported()) {
+                return true;
+            }
+            listener.getLogger().println("Artifactory at " + server.getUrl() +
+                    " does not support deploying by checksum, deploying the content of all artifacts.");
+        } catch (IOException e) {
+            listener.getLogger().println("Could not obtain the version of Artifactory at " + server.getUrl() +
+                    ", deploying the content of all artifacts: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * @param details    The details of the artifact to deploy. The SHA1 checksum is mandatory
+     * @param properties The properties to attach to the deployed artifact
+     * @return True if the artifact was deployed by checksum, false if it should be deployed with its content
+     */
+    public boolean tryChecksumDeploy(DeployDetails details, Map<String, String> properties) throws IOException {
+        if (StringUtils.isBlank(details.getSha1()) || details.getFile().length() < MIN_CHECKSUM_DEPLOY_SIZE) {
+            return false;
+        }
+
+        HttpURLConnection connection = connectionFactory.openConnection(buildDeploymentUrl(details, properties));
+        try {
+            connection.setRequestMethod("PUT");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(0);
+            connection.setRequestProperty("X-Checksum-Deploy", "true");
+            connection.setRequestProperty("X-Checksum-Sha1", details.getSha1());
+            if (StringUtils.isNotBlank(details.getMd5())) {
+                connection.setRequestProperty("X-Checksum", details.getMd5());
+            }
+            connection.getOutputStream().close();
+
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_OK || status == HttpURLConnection.HTTP_CREATED) {
+                return isDeployedContent(connection.getInputStream(), details.getSha1());
+            }
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                // the content is not known to Artifactory
+                return false;
+            }
+            throw new IOException("Failed to deploy '" + details.getArtifactPath() + "' by checksum. Status code: " +
+                    status + " " + connection.getResponseMessage());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * @param response The response to a deployment by checksum, the details of the deployed artifact
+     * @return True if the server answered with the SHA1 checksum of the file, false if it may have stored other content
+     */
+    static boolean isDeployedContent(InputStream response, String sha1) throws IOException {
+        try {
+            Map<?, ?> deployed = new ObjectMapper().readValue(response, Map.class);
+            Object checksums = deployed != null ? deployed.get("checksums") : null;
+            if (!(checksums instanceof Map)) {
+                return false;
+            }
+            return sha1.equalsIgnoreCase(String.valueOf(((Map<?, ?>) checksums).get("sha1")));
+        } catch (JsonProcessingException e) {
+            // not the details of an artifact
+            return false;
+        } catch (EOFException e) {
+            // no details at all
+            return false;
+        } finally {
+            Closeables.closeQuietly(response);
+        }
+    }
+
+    private String buildDeploymentUrl(DeployDetails details, Map<String, String> properties) throws IOException {
+        StringBuilder deploymentPathBuilder = new StringBuilder(server.getUrl());
+        deploymentPathBuilder.append("/").append(details.getTargetRepository());
+        if (!details.getArtifactPath().startsWith("/")) {
+            deploymentPathBuilder.append("/");
+        }
+        deploymentPathBuilder.append(details.getArtifactPath());
+        if (properties != null) {
+            for (Map.Entry<String, String> property : properties.entrySet()) {
+                deploymentPathBuilder.append(";").append(URLEncoder.encode(property.getKey(), "UTF-8"))
+                        .append("=").append(URLEncoder.encode(StringUtils.defaultString(property.getValue()), "UTF-8"));
+            }
+        }
+        return deploymentPathBuilder.toString();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A bounded pool of Artifactory clients shared by concurrent deployment workers. Each client is used by a single
+ * thread at a time and clients are created lazily up to the pool size.
+ */
+public abstract class ClientPool<C> {
+
+    private final int size;
+    private final BlockingQueue<C> idle = new LinkedBlockingQueue<C>();
+    private final List<C> created = Lists.newArrayList();
+
+    public ClientPool(int size) {
+        this.size = Math.max(1, size);
+    }
+
+    public C acquire() throws InterruptedException {
+        C client = idle.poll();
+        if (client != null) {
+            return client;
+        }
+        synchronized (created) {
+            if (created.size() < size) {
+                client = createClient();
+                created.add(client);
+                return client;
+            }
+        }
+        return idle.take();
+    }
+
+    public void release(C client) {
+        idle.offer(client);
+    }
+
+    /**
+     * Shuts down all the clients created by this pool.
+     */
+    public void shutdown() {
+        synchronized (created) {
+            for (C client : created) {
+                shutdownClient(client);
+            }
+            created.clear();
+            idle.clear();
+        }
+    }
+
+    protected abstract C createClient();
+
+    protected abstract void shutdownClient(C client);
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Lists;
+import org.jfrog.build.api.util.Log;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a list of tasks over a bounded pool of worker threads. The log lines of every task are buffered and written
+ * to the build log in the order the tasks were submitted, so the output looks the same as a serial run.
+ * <p/>
+ * In fail fast mode the first failure stops the tasks that did not start yet and is rethrown, otherwise all the tasks
+ * are executed and the failures are reported together once the last task is done.
+ */
+public class ConcurrentTaskRunner {
+
+    private final String name;
+    private final int threads;
+    private final boolean failFast;
+    private final Log logger;
+
+    /**
+     * @param name     Name prefix of the worker threads
+     * @param threads  Maximum number of concurrent tasks. A value smaller than 2 runs the tasks in the calling thread
+     * @param failFast True to stop on the first failure, false to run all the tasks and report all the failures
+     * @param logger   The build log to write the buffered task log lines to
+     */
+    public ConcurrentTaskRunner(String name, int threads, boolean failFast, PrintStream logger) {
+        this(name, threads, failFast, new PrintStreamLog(logger));
+    }
+
+    /**
+     * @param logger The log to write the buffered task log lines to, like the log of an enclosing task
+     */
+    public ConcurrentTaskRunner(String name, int threads, boolean failFast, Log logger) {
+        this.name = name;
+        this.threads = threads;
+        this.failFast = failFast;
+        this.logger = logger;
+    }
+
+    /**
+     * Runs the given tasks and returns their results in the order of the tasks. When not in fail fast mode, results
+     * of failed tasks are omitted (an exception is thrown in any case after all the tasks are done).
+     */
+    public <T> List<T> run(List<? extends LoggingTask<T>> tasks) throws IOException, InterruptedException {
+        List<T> results = Lists.newArrayListWithCapacity(tasks.size());
+        List<Throwable> errors = Lists.newArrayList();
+        AtomicBoolean aborted = new AtomicBoolean();
+
+        if (threads < 2 || tasks.size() < 2) {
+            for (LoggingTask<T> task : tasks) {
+                try {
+                    results.add(new GuardedTask<T>(task, aborted).call());
+                } catch (Exception e) {
+                    handleFailure(task, e, errors);
+                } finally {
+                    task.flush(logger);
+                }
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()),
+                    new DaemonThreadFactory(name));
+            try {
+                List<Future<T>> futures = Lists.newArrayListWithCapacity(tasks.size());
+                for (LoggingTask<T> task : tasks) {
+                    futures.add(executor.submit(new GuardedTask<T>(task, aborted)));
+                }
+                executor.shutdown();
+                for (int i = 0; i < tasks.size(); i++) {
+                    LoggingTask<T> task = tasks.get(i);
+                    try {
+                        results.add(futures.get(i).get());
+                    } catch (ExecutionException e) {
+                        handleFailure(task, e.getCause(), errors);
+                    } finally {
+                        task.flush(logger);
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        if (!errors.isEmpty()) {
+            IOException exception = new IOException(errors.size() + " out of " + tasks.size() +
+                    " tasks failed. First failure: " + errors.get(0).getMessage());
+            exception.initCause(errors.get(0));
+            throw exception;
+        }
+        return results;
+    }
+
+    private void handleFailure(LoggingTask<?> task, Throwable cause, List<Throwable> errors)
+            throws IOException, InterruptedException {
+        if (cause instanceof TaskSkippedException) {
+            return;
+        }
+        if (failFast) {
+            task.flush(logger);
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            IOException exception = new IOException(cause.getMessage());
+            exception.initCause(cause);
+            throw exception;
+        }
+        task.log("Error: " + cause.getMessage());
+        errors.add(cause);
+    }
+
+    /**
+     * A unit of work whose log lines are kept until the runner writes them to the build log in submission order.
+     */
+    public abstract static class LoggingTask<T> implements Callable<T> {
+        private final List<String> lines = Lists.newArrayList();
+
+        private final Log log = new TaskLog();
+
+        protected void log(String line) {
+            synchronized (lines) {
+                lines.add(line);
+            }
+        }
+
+        /**
+         * @return Log that keeps its lines with the lines of the task, for the helpers the task calls
+         */
+        protected Log getLog() {
+            return log;
+        }
+
+        private void flush(Log logger) {
+            synchronized (lines) {
+                for (String line : lines) {
+                    logger.info(line);
+                }
+                lines.clear();
+            }
+        }
+
+        private class TaskLog implements Log {
+            public void debug(String message) {
+                log(message);
+            }
+
+            public void info(String message) {
+                log(message);
+            }
+
+            public void warn(String message) {
+                log(message);
+            }
+
+            public void error(String message) {
+                log(message);
+            }
+
+            public void error(String message, Throwable e) {
+                log(message);
+            }
+        }
+    }
+
+    private static class PrintStreamLog implements Log {
+        private final PrintStream logger;
+
+        private PrintStreamLog(PrintStream logger) {
+            this.logger = logger;
+        }
+
+        public void debug(String message) {
+            logger.println(message);
+        }
+
+        public void info(String message) {
+            logger.println(message);
+        }
+
+        public void warn(String message) {
+            logger.println(message);
+        }
+
+        public void error(String message) {
+            logger.println(message);
+        }
+
+        public void error(String message, Throwable e) {
+            logger.println(message);
+        }
+    }
+
+    /**
+     * Skips the task if a previous task failed in fail fast mode and marks the run as aborted on failure.
+     */
+    private class GuardedTask<T> implements Callable<T> {
+        private final LoggingTask<T> task;
+        private final AtomicBoolean aborted;
+
+        private GuardedTask(LoggingTask<T> task, AtomicBoolean aborted) {
+            this.task = task;
+            this.aborted = aborted;
+        }
+
+        public T call() throws Exception {
+            if (aborted.get()) {
+                throw new TaskSkippedException();
+            }
+            try {
+                return task.call();
+            } catch (Exception e) {
+                if (failFast) {
+                    aborted.set(true);
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static class TaskSkippedException extends Exception {
+    }
+}
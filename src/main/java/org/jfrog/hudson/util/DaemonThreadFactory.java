@@ -0,0 +1,41 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates numbered daemon threads, so background work of the plugin never keeps the JVM alive.
+ */
+public class DaemonThreadFactory implements ThreadFactory {
+    private final AtomicInteger counter = new AtomicInteger();
+    private final String name;
+
+    /**
+     * @param name Name prefix of the created threads
+     */
+    public DaemonThreadFactory(String name) {
+        this.name = name;
+    }
+
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Content addressed store of downloaded dependencies on a node, keyed by the SHA1 checksum of the content. Cached
+ * files are copied to and from the cache, so a file of the workspace never shares its content with a cache entry, and
+ * the checksum of an entry is verified while it is copied to the workspace. A corrupted entry is removed instead of
+ * being served.
+ * <p/>
+ * Reads take no lock: an entry is visible only once it is completely written and renamed into place, and a cache hit
+ * only records the time of the access in a concurrent index in memory. The total size of the cache is capped, and
+ * when the cap is exceeded the least recently used entries are evicted while holding the lock of the cache, which
+ * only stores and evictions take. The recency of the entries is initialized from the time they were stored.
+ */
+public class DependencyCache {
+    private static final Logger log = Logger.getLogger(DependencyCache.class.getName());
+
+    /**
+     * Eviction removes entries until the cache is below this part of its maximal size, to avoid evicting on every
+     * store once the cache is full
+     */
+    private static final double EVICTION_RATIO = 0.9;
+
+    private static final Map<File, DependencyCache> instances = Maps.newHashMap();
+
+    private final File directory;
+    private volatile long maxSize;
+    /**
+     * The entries by their file. Null until the entries are first needed.
+     */
+    private volatile ConcurrentMap<File, CacheEntry> index;
+    /**
+     * Orders the accesses to the entries, more precisely than the system clock
+     */
+    private final AtomicLong accessClock = new AtomicLong();
+    private long size;
+
+    DependencyCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param directory The directory of the cache
+     * @param maxSize   The maximal total size of the cached files in bytes
+     * @return The dependency cache stored in the given directory
+     */
+    public static DependencyCache getInstance(File directory, long maxSize) {
+        File key = directory.getAbsoluteFile();
+        synchronized (instances) {
+            DependencyCache cache = instances.get(key);
+            if (cache == null) {
+                cache = new DependencyCache(key, maxSize);
+                instances.put(key, cache);
+            } else {
+                cache.maxSize = maxSize;
+            }
+            return cache;
+        }
+    }
+
+    /**
+     * Copies the cached content with the given SHA1 checksum to the target file, replacing the target if it exists.
+     *
+     * @return True if the content is cached and was copied to the target, false otherwise
+     */
+    public boolean materialize(String sha1, File target) throws IOException {
+        File entry = getEntryFile(sha1);
+        if (!touch(entry)) {
+            return false;
+        }
+        File parent = target.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory " + parent);
+        }
+        File tempFile = new File(parent, target.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            ChecksumCalculator.Checksums checksums;
+            InputStream in;
+            try {
+                in = new FileInputStream(entry);
+            } catch (IOException e) {
+                // evicted concurrently, the content is downloaded
+                return false;
+            }
+            try {
+                checksums = ChecksumCalculator.copyWithChecksums(in, tempFile);
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+            if (!sha1.equalsIgnoreCase(checksums.getSha1())) {
+                log.warning("Removing the corrupted dependency cache entry " + entry);
+                remove(entry);
+                return false;
+            }
+            if (target.exists() && !target.delete()) {
+                throw new IOException("Could not replace " + target);
+            }
+            if (!tempFile.renameTo(target)) {
+                throw new IOException("Could not move " + tempFile + " to " + target);
+            }
+            tempFile = null;
+            return true;
+        } finally {
+            if (tempFile != null && tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Adds a copy of the given file to the cache under its SHA1 checksum, unless it is already cached.
+     */
+    public void store(File file, String sha1) {
+        File entry = getEntryFile(sha1);
+        if (touch(entry)) {
+            return;
+        }
+        File parent = entry.getParentFile();
+        File tempFile = null;
+        try {
+            if (!parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Could not create directory " + parent);
+            }
+            tempFile = new File(parent, sha1 + "." + Thread.currentThread().getId() + ".tmp");
+            if (tempFile.exists() && !tempFile.delete()) {
+                throw new IOException("Could not delete " + tempFile);
+            }
+            // the store time is the initial recency of the entry after a restart
+            FileUtils.copyFile(file, tempFile, false);
+            tempFile.setReadOnly();
+            if (!tempFile.renameTo(entry)) {
+                // probably stored concurrently by another build
+                return;
+            }
+            tempFile = null;
+            add(entry);
+        } catch (IOException e) {
+            log.log(Level.WARNING, "Could not add " + file + " to the dependency cache: " + e.getMessage());
+        } finally {
+            if (tempFile != null && tempFile.exists()) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Marks the entry as the most recently used one, without locking.
+     *
+     * @return True if the entry exists
+     */
+    private boolean touch(File entry) {
+        CacheEntry cacheEntry = getIndex().get(entry);
+        if (cacheEntry == null) {
+            return false;
+        }
+        cacheEntry.lastAccess = accessClock.incrementAndGet();
+        return entry.isFile();
+    }
+
+    private synchronized void add(File entry) {
+        long length = entry.length();
+        CacheEntry previous = getIndex().put(entry, new CacheEntry(length, accessClock.incrementAndGet()));
+        size += length - (previous != null ? previous.size : 0);
+        if (size > maxSize) {
+            evict();
+        }
+    }
+
+    private synchronized void remove(File entry) {
+        CacheEntry cacheEntry = getIndex().remove(entry);
+        if (cacheEntry != null) {
+            size -= cacheEntry.size;
+        }
+        entry.delete();
+    }
+
+    /**
+     * Removes the least recently used entries until the cache is below its maximal size. Entries read meanwhile may
+     * still be evicted, in which case their readers download them.
+     */
+    synchronized void evict() {
+        long target = (long) (maxSize * EVICTION_RATIO);
+        List<Map.Entry<File, CacheEntry>> entries = Lists.newArrayList(getIndex().entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<File, CacheEntry>>() {
+            public int compare(Map.Entry<File, CacheEntry> o1, Map.Entry<File, CacheEntry> o2) {
+                long diff = o1.getValue().lastAccess - o2.getValue().lastAccess;
+                return diff < 0 ? -1 : (diff == 0 ? 0 : 1);
+            }
+        });
+        for (Map.Entry<File, CacheEntry> entry : entries) {
+            if (size <= target) {
+                break;
+            }
+            if (entry.getKey().delete() || !entry.getKey().exists()) {
+                size -= entry.getValue().size;
+                getIndex().remove(entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * @return The total size of the cached files
+     */
+    synchronized long getSize() {
+        getIndex();
+        return size;
+    }
+
+    /**
+     * @return The index of the entries, scanned from the cache directory on first use. The entries are first ordered
+     *         by the time they were stored.
+     */
+    private ConcurrentMap<File, CacheEntry> getIndex() {
+        ConcurrentMap<File, CacheEntry> entriesIndex = index;
+        if (entriesIndex != null) {
+            return entriesIndex;
+        }
+        synchronized (this) {
+            if (index == null) {
+                List<File> entries = listEntries();
+                Collections.sort(entries, new Comparator<File>() {
+                    public int compare(File o1, File o2) {
+                        long diff = o1.lastModified() - o2.lastModified();
+                        return diff < 0 ? -1 : (diff == 0 ? 0 : 1);
+                    }
+                });
+                ConcurrentMap<File, CacheEntry> scanned = new ConcurrentHashMap<File, CacheEntry>();
+                size = 0;
+                for (File entry : entries) {
+                    long length = entry.length();
+                    scanned.put(entry, new CacheEntry(length, accessClock.incrementAndGet()));
+                    size += length;
+                }
+                index = scanned;
+            }
+            return index;
+        }
+    }
+
+    private List<File> listEntries() {
+        List<File> entries = Lists.newArrayList();
+        File[] buckets = directory.listFiles();
+        if (buckets == null) {
+            return entries;
+        }
+        for (File bucket : buckets) {
+            File[] files = bucket.listFiles();
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (file.isFile() && !file.getName().endsWith(".tmp")) {
+                    entries.add(file);
+                }
+            }
+        }
+        return entries;
+    }
+
+    private File getEntryFile(String sha1) {
+        String key = sha1.toLowerCase();
+        return new File(new File(directory, key.substring(0, 2)), key);
+    }
+
+    private static class CacheEntry {
+        private final long size;
+        private volatile long lastAccess;
+
+        private CacheEntry(long size, long lastAccess) {
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Maps;
+import org.apache.commons.lang.StringUtils;
+import org.jfrog.build.api.BuildInfoProperties;
+import org.jfrog.build.api.builder.BuildInfoBuilder;
+import org.jfrog.build.client.IncludeExcludePatterns;
+import org.jfrog.build.client.PatternMatcher;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Selects the environment variables that are added to the build info, in a single pass over the variables. Variables
+ * inherited from the environment of the Hudson process are left out unless they are included explicitly, and the
+ * variables can be further filtered by include and exclude patterns of their keys.
+ */
+public class EnvironmentFilter {
+
+    private static final int MAX_CACHED_PROPERTY_KEYS = 4096;
+
+    /**
+     * Build info property keys by environment variable key, the same variables are added by every build
+     */
+    private static final ConcurrentMap<String, String> propertyKeys = new ConcurrentHashMap<String, String>();
+
+    private final Map<String, String> systemEnv;
+    private final IncludeExcludePatterns patterns;
+
+    /**
+     * @param includeSystemVars True to include the variables inherited from the environment of the Hudson process
+     * @param patterns          Include and exclude patterns of the variable keys, null to include all the keys
+     */
+    public EnvironmentFilter(boolean includeSystemVars, IncludesExcludes patterns) {
+        this.systemEnv = includeSystemVars ? null : System.getenv();
+        if (patterns != null && (StringUtils.isNotBlank(patterns.getIncludePatterns()) ||
+                StringUtils.isNotBlank(patterns.getExcludePatterns()))) {
+            this.patterns = new IncludeExcludePatterns(patterns.getIncludePatterns(), patterns.getExcludePatterns());
+        } else {
+            this.patterns = null;
+        }
+    }
+
+    public boolean accept(String key) {
+        if (systemEnv != null && systemEnv.containsKey(key)) {
+            return false;
+        }
+        return patterns == null || !PatternMatcher.pathConflicts(key, patterns);
+    }
+
+    /**
+     * @return The accepted variables
+     */
+    public Map<String, String> filter(Map<String, String> vars) {
+        Map<String, String> filtered = Maps.newHashMapWithExpectedSize(vars.size());
+        for (Map.Entry<String, String> entry : vars.entrySet()) {
+            if (accept(entry.getKey())) {
+                filtered.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return filtered;
+    }
+
+    /**
+     * Adds the accepted variables to the build info as environment properties.
+     */
+    public void addProperties(Map<String, String> vars, BuildInfoBuilder builder) {
+        for (Map.Entry<String, String> entry : vars.entrySet()) {
+            if (accept(entry.getKey())) {
+                builder.addProperty(getPropertyKey(entry.getKey()), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return The key of the build info property of the environment variable
+     */
+    public static String getPropertyKey(String key) {
+        String propertyKey = propertyKeys.get(key);
+        if (propertyKey == null) {
+            propertyKey = BuildInfoProperties.BUILD_INFO_ENVIRONMENT_PREFIX + key;
+            // unique keys, like generated parameter names, are not cached once the cache is full
+            if (propertyKeys.size() < MAX_CACHED_PROPERTY_KEYS) {
+                propertyKeys.putIfAbsent(key, propertyKey);
+            }
+        }
+        return propertyKey;
+    }
+}
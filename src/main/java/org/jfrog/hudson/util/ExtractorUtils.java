@@ -16,9 +16,6 @@
 
 package org.jfrog.hudson.util;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.MapDifference;
-import com.google.common.collect.Maps;
 import com.google.common.io.Closeables;
 import hudson.FilePath;
 import hudson.Util;
@@ -27,7 +24,6 @@ import hudson.model.BuildListener;
 import hudson.model.Cause;
 import hudson.model.Computer;
 import hudson.model.Hudson;
-import hudson.model.Run;
 import hudson.slaves.SlaveComputer;
 import hudson.tasks.LogRotator;
 import org.apache.commons.lang.StringUtils;
@@ -116,7 +112,7 @@ public class ExtractorUtils {
                     publisherContext.getAggregationBuildStatus()).setIssueTrackerInfo(configuration);
         }
 
-        addEnvVars(env, build, configuration);
+        addEnvVars(env, build, configuration, getEnvVarsPatterns(publisherContext, resolverContext));
         persistConfiguration(build, configuration, env);
         return configuration;
     }
@@ -258,14 +254,7 @@ public class ExtractorUtils {
      * Get the list of build numbers that are to be kept forever.
      */
     public static List<String> getBuildNumbersNotToBeDeleted(AbstractBuild build) {
-        List<String> notToDelete = Lists.newArrayList();
-        List<? extends Run<?, ?>> builds = build.getProject().getBuilds();
-        for (Run<?, ?> run : builds) {
-            if (run.isKeepLog()) {
-                notToDelete.add(String.valueOf(run.getNumber()));
-            }
-        }
-        return notToDelete;
+        return KeptBuildsIndex.getKeptBuildNumbers(build.getProject());
     }
 
     private static String getBuildNumbersNotToBeDeletedAsString(AbstractBuild build) {
@@ -279,9 +268,8 @@ public class ExtractorUtils {
 
     public static void addBuildRootIfNeeded(AbstractBuild build, ArtifactoryClientConfiguration configuration)
             throws UnsupportedEncodingException {
-        AbstractBuild<?, ?> rootBuild = BuildUniqueIdentifierHelper.getRootBuild(build);
-        if (rootBuild != null) {
-            String identifier = BuildUniqueIdentifierHelper.getUpstreamIdentifier(rootBuild);
+        String identifier = BuildUniqueIdentifierHelper.getRootBuildIdentifier(build);
+        if (identifier != null) {
             configuration.info.setBuildRoot(identifier);
         }
     }
@@ -334,13 +322,11 @@ public class ExtractorUtils {
     }
 
     private static void addEnvVars(Map<String, String> env, AbstractBuild<?, ?> build,
-            ArtifactoryClientConfiguration configuration) {
+            ArtifactoryClientConfiguration configuration, IncludesExcludes envVarsPatterns) {
         // Write all the deploy (matrix params) properties.
         configuration.fillFromProperties(env);
         //Add only the jenkins specific environment variables
-        MapDifference<String, String> envDifference = Maps.difference(env, System.getenv());
-        Map<String, String> filteredEnvDifference = envDifference.entriesOnlyOnLeft();
-        configuration.info.addBuildVariables(filteredEnvDifference);
+        configuration.info.addBuildVariables(new EnvironmentFilter(false, envVarsPatterns).filter(env));
 
         // add build variables
         Map<String, String> buildVariables = build.getBuildVariables();
@@ -350,11 +336,20 @@ public class ExtractorUtils {
                 configuration.publisher.addMatrixParam(entry.getKey(), entry.getValue());
             }
         }
-        Map<String, String> filteredBuildVars = Maps.newHashMap();
-
-        MapDifference<String, String> buildVarDifference = Maps.difference(buildVariables, filteredBuildVars);
-        Map<String, String> filteredBuildVarDifferences = buildVarDifference.entriesOnlyOnLeft();
+        configuration.info.addBuildVariables(new EnvironmentFilter(true, envVarsPatterns).filter(buildVariables));
+    }
 
-        configuration.info.addBuildVariables(filteredBuildVarDifferences);
+    /**
+     * @return The environment variables patterns of the server of the publisher, or else of the resolver
+     */
+    private static IncludesExcludes getEnvVarsPatterns(PublisherContext publisherContext,
+            ResolverContext resolverContext) {
+        if (publisherContext != null && publisherContext.getArtifactoryServer() != null) {
+            return publisherContext.getArtifactoryServer().getEnvVarsPatterns();
+        }
+        if (resolverContext != null && resolverContext.getServer() != null) {
+            return resolverContext.getServer().getEnvVarsPatterns();
+        }
+        return null;
     }
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang.StringUtils;
+import org.jfrog.build.client.ProxyConfiguration;
+import org.jfrog.hudson.ArtifactoryServer;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+
+/**
+ * Opens plain HTTP connections to an Artifactory server with the timeout, proxy and credentials of the server, for the
+ * requests the build info client does not support.
+ */
+public class HttpConnectionFactory {
+
+    private final ArtifactoryServer server;
+    private final String username;
+    private final String password;
+    private final ProxyConfiguration proxyConfiguration;
+
+    public HttpConnectionFactory(ArtifactoryServer server, String username, String password,
+            ProxyConfiguration proxyConfiguration) {
+        this.server = server;
+        this.username = username;
+        this.password = password;
+        this.proxyConfiguration = proxyConfiguration;
+    }
+
+    public ArtifactoryServer getServer() {
+        return server;
+    }
+
+    public HttpURLConnection openConnection(String url) throws IOException {
+        HttpURLConnection connection;
+        boolean useProxy = !server.isBypassProxy() && proxyConfiguration != null &&
+                proxyConfiguration.host != null && proxyConfiguration.port != 0;
+        if (useProxy) {
+            Proxy proxy = new Proxy(Proxy.Type.HTTP,
+                    new InetSocketAddress(proxyConfiguration.host, proxyConfiguration.port));
+            connection = (HttpURLConnection) new URL(url).openConnection(proxy);
+            if (StringUtils.isNotBlank(proxyConfiguration.username)) {
+                connection.setRequestProperty("Proxy-Authorization",
+                        basicAuthorization(proxyConfiguration.username, proxyConfiguration.password));
+            }
+        } else {
+            connection = (HttpURLConnection) new URL(url).openConnection();
+        }
+        int timeoutMillis = server.getTimeout() * 1000;
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setUseCaches(false);
+        if (StringUtils.isNotBlank(username)) {
+            connection.setRequestProperty("Authorization", basicAuthorization(username, password));
+        }
+        return connection;
+    }
+
+    private String basicAuthorization(String user, String pass) throws IOException {
+        String credentials = user + ":" + StringUtils.defaultString(pass);
+        return "Basic " + new String(Base64.encodeBase64(credentials.getBytes("UTF-8")), "US-ASCII");
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
+import com.google.common.collect.Sets;
+import com.google.common.io.Closeables;
+import hudson.Extension;
+import hudson.XmlFile;
+import hudson.model.AbstractBuild;
+import hudson.model.AbstractProject;
+import hudson.model.Job;
+import hudson.model.Run;
+import hudson.model.Saveable;
+import hudson.model.TaskListener;
+import hudson.model.listeners.RunListener;
+import hudson.model.listeners.SaveableListener;
+import org.apache.commons.lang.StringUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Index of the build numbers of each project that are marked to be kept forever, used for the build retention. The
+ * builds of a project are scanned once, when the index of the project is first requested, and the index is then kept
+ * in a file of the project and maintained from the saved, completed and deleted runs, so it is read without loading
+ * the build records, also after a restart.
+ * <p/>
+ * Saved runs are not evaluated by the listeners, which only record the build numbers to check. Those builds are
+ * loaded and checked when the index is next requested, so a build saved several times while it runs is checked once.
+ * <p/>
+ * Builds are also kept while a build of a downstream project that keeps its dependencies exists. When such a
+ * downstream build completes or is deleted, the upstream builds it depends on are checked again. When the downstream
+ * projects that keep their dependencies change, the builds of the project are scanned again.
+ */
+public class KeptBuildsIndex {
+    private static final Logger log = Logger.getLogger(KeptBuildsIndex.class.getName());
+
+    private static final String INDEX_FILE_NAME = "artifactory-kept-builds.properties";
+
+    /**
+     * Index by project. Weak keys since projects are replaced when the configuration is reloaded.
+     */
+    private static final ConcurrentMap<Job, ProjectIndex> indexByProject = new MapMaker().weakKeys().makeMap();
+
+    private KeptBuildsIndex() {
+    }
+
+    /**
+     * @return The numbers of the builds of the project that are kept forever, from the newest build to the oldest
+     */
+    public static List<String> getKeptBuildNumbers(Job<?, ?> project) {
+        ProjectIndex index = indexByProject.get(project);
+        if (index == null) {
+            ProjectIndex newIndex = new ProjectIndex(getIndexFile(project));
+            index = indexByProject.putIfAbsent(project, newIndex);
+            if (index == null) {
+                index = newIndex;
+            }
+        }
+        // the builds are loaded while holding the lock of the project only, so runs of other projects are saved meanwhile
+        synchronized (index) {
+            Set<String> keepDependencies = getDownstreamProjectsKeepingDependencies(project);
+            if (!index.isScanned() || !keepDependencies.equals(index.getKeepDependencies())) {
+                List<Integer> keptBuilds = Lists.newArrayList();
+                for (Run<?, ?> run : project.getBuilds()) {
+                    if (run.isKeepLog()) {
+                        keptBuilds.add(run.getNumber());
+                    }
+                }
+                index.reset(keptBuilds, keepDependencies);
+            }
+            for (Integer buildNumber : index.getPendingChecks()) {
+                Run<?, ?> run = project.getBuildByNumber(buildNumber);
+                index.update(buildNumber, run != null && run.isKeepLog());
+            }
+            return index.getKeptBuildNumbers();
+        }
+    }
+
+    /**
+     * @return The index of the project if it was requested before, or null if the project is not indexed
+     */
+    private static ProjectIndex getExistingIndex(Job<?, ?> project) {
+        ProjectIndex index = indexByProject.get(project);
+        if (index == null) {
+            // after a restart only projects with an index file are indexed
+            File indexFile = getIndexFile(project);
+            if (!indexFile.exists()) {
+                return null;
+            }
+            ProjectIndex newIndex = new ProjectIndex(indexFile);
+            index = indexByProject.putIfAbsent(project, newIndex);
+            if (index == null) {
+                index = newIndex;
+            }
+        }
+        return index;
+    }
+
+    private static File getIndexFile(Job<?, ?> project) {
+        return new File(project.getRootDir(), INDEX_FILE_NAME);
+    }
+
+    private static Set<String> getDownstreamProjectsKeepingDependencies(Job<?, ?> project) {
+        Set<String> projectNames = Sets.newTreeSet();
+        if (project instanceof AbstractProject) {
+            for (AbstractProject<?, ?> downstreamProject : ((AbstractProject<?, ?>) project).getDownstreamProjects()) {
+                if (downstreamProject.isKeepDependencies()) {
+                    projectNames.add(downstreamProject.getFullName());
+                }
+            }
+        }
+        return projectNames;
+    }
+
+    /**
+     * Checks again the upstream builds the build depends on, if its project keeps its dependencies.
+     */
+    private static void checkUpstreamBuilds(Run<?, ?> run) {
+        if (!(run instanceof AbstractBuild) || !((AbstractBuild<?, ?>) run).getProject().isKeepDependencies()) {
+            return;
+        }
+        Map<AbstractProject, Integer> upstreamBuilds = ((AbstractBuild<?, ?>) run).getUpstreamBuilds();
+        for (Map.Entry<AbstractProject, Integer> upstreamBuild : upstreamBuilds.entrySet()) {
+            ProjectIndex index = getExistingIndex(upstreamBuild.getKey());
+            if (index != null) {
+                index.check(upstreamBuild.getValue());
+            }
+        }
+    }
+
+    /**
+     * The kept builds of a single project and the build numbers to check before they are read. The index is saved to
+     * its file on every change, and is read from the file when first used.
+     */
+    static class ProjectIndex {
+        private static final String KEPT_BUILDS = "keptBuilds";
+        private static final String PENDING_CHECKS = "pendingChecks";
+        private static final String KEEP_DEPENDENCIES = "keepDependencies";
+
+        private final File file;
+        private final SortedSet<Integer> keptBuilds = new TreeSet<Integer>(Collections.reverseOrder());
+        private final SortedSet<Integer> pendingChecks = new TreeSet<Integer>();
+        private final Set<String> keepDependencies = Sets.newTreeSet();
+        private boolean loaded;
+        private boolean scanned;
+
+        ProjectIndex(File file) {
+            this.file = file;
+        }
+
+        /**
+         * @return True if the kept builds are known, either from a scan of the builds or from the index file
+         */
+        synchronized boolean isScanned() {
+            load();
+            return scanned;
+        }
+
+        /**
+         * Replaces the index with the result of a scan of the builds.
+         *
+         * @param keptBuilds       The numbers of the builds that are kept forever
+         * @param keepDependencies The names of the downstream projects that keep their dependencies
+         */
+        synchronized void reset(Collection<Integer> keptBuilds, Set<String> keepDependencies) {
+            load();
+            this.keptBuilds.clear();
+            this.keptBuilds.addAll(keptBuilds);
+            this.keepDependencies.clear();
+            this.keepDependencies.addAll(keepDependencies);
+            pendingChecks.clear();
+            scanned = true;
+            save();
+        }
+
+        /**
+         * Records a build to check before the index is next read. Ignored until the builds are scanned, since the
+         * scan checks all the builds.
+         */
+        synchronized void check(int buildNumber) {
+            load();
+            if (scanned && pendingChecks.add(buildNumber)) {
+                save();
+            }
+        }
+
+        /**
+         * Sets whether a build is kept forever. Ignored until the builds are scanned.
+         */
+        synchronized void update(int buildNumber, boolean kept) {
+            load();
+            if (!scanned) {
+                return;
+            }
+            boolean changed = pendingChecks.remove(buildNumber);
+            changed |= kept ? keptBuilds.add(buildNumber) : keptBuilds.remove(buildNumber);
+            if (changed) {
+                save();
+            }
+        }
+
+        synchronized List<Integer> getPendingChecks() {
+            load();
+            return Lists.newArrayList(pendingChecks);
+        }
+
+        synchronized Set<String> getKeepDependencies() {
+            load();
+            return Sets.newTreeSet(keepDependencies);
+        }
+
+        /**
+         * @return The numbers of the kept builds, from the newest build to the oldest
+         */
+        synchronized List<String> getKeptBuildNumbers() {
+            load();
+            List<String> buildNumbers = Lists.newArrayListWithCapacity(keptBuilds.size());
+            for (Integer buildNumber : keptBuilds) {
+                buildNumbers.add(String.valueOf(buildNumber));
+            }
+            return buildNumbers;
+        }
+
+        private void load() {
+            if (loaded) {
+                return;
+            }
+            loaded = true;
+            if (!file.exists()) {
+                return;
+            }
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                Properties properties = new Properties();
+                properties.load(in);
+                String keptBuildsValue = properties.getProperty(KEPT_BUILDS);
+                if (keptBuildsValue == null) {
+                    return;
+                }
+                keptBuilds.addAll(parseBuildNumbers(keptBuildsValue));
+                pendingChecks.addAll(parseBuildNumbers(properties.getProperty(PENDING_CHECKS)));
+                for (String projectName : StringUtils.split(properties.getProperty(KEEP_DEPENDENCIES, ""), '\n')) {
+                    keepDependencies.add(projectName);
+                }
+                scanned = true;
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Failed to read the kept builds index " + file + ", the builds are scanned", e);
+            } catch (NumberFormatException e) {
+                log.log(Level.WARNING, "Invalid kept builds index " + file + ", the builds are scanned", e);
+            } finally {
+                Closeables.closeQuietly(in);
+            }
+            if (!scanned) {
+                keptBuilds.clear();
+                pendingChecks.clear();
+                keepDependencies.clear();
+            }
+        }
+
+        private void save() {
+            Properties properties = new Properties();
+            properties.setProperty(KEPT_BUILDS, StringUtils.join(keptBuilds, ','));
+            properties.setProperty(PENDING_CHECKS, StringUtils.join(pendingChecks, ','));
+            properties.setProperty(KEEP_DEPENDENCIES, StringUtils.join(keepDependencies, '\n'));
+            OutputStream out = null;
+            try {
+                out = new FileOutputStream(file);
+                properties.store(out, "Builds kept forever, maintained by the Artifactory plugin");
+            } catch (IOException e) {
+                // the index is still maintained in memory, a broken file only causes a scan after a restart
+                log.log(Level.WARNING, "Failed to save the kept builds index " + file, e);
+            } finally {
+                Closeables.closeQuietly(out);
+            }
+        }
+
+        private static List<Integer> parseBuildNumbers(String value) {
+            List<Integer> buildNumbers = Lists.newArrayList();
+            for (String buildNumber : StringUtils.split(StringUtils.defaultString(value), ',')) {
+                buildNumbers.add(Integer.valueOf(buildNumber.trim()));
+            }
+            return buildNumbers;
+        }
+    }
+
+    /**
+     * Records saved runs of indexed projects to be checked, since a run is saved when it is marked or unmarked to be
+     * kept forever.
+     */
+    @Extension
+    public static class RunSaveListener extends SaveableListener {
+        @Override
+        public void onChange(Saveable o, XmlFile file) {
+            if (o instanceof Run) {
+                Run<?, ?> run = (Run<?, ?>) o;
+                ProjectIndex index = getExistingIndex(run.getParent());
+                if (index != null) {
+                    index.check(run.getNumber());
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks the upstream builds of completed builds, and removes deleted runs from the index.
+     */
+    @Extension
+    public static class RunCompletionListener extends RunListener<Run> {
+        public RunCompletionListener() {
+            super(Run.class);
+        }
+
+        @Override
+        public void onCompleted(Run run, TaskListener listener) {
+            checkUpstreamBuilds(run);
+        }
+
+        @Override
+        public void onDeleted(Run run) {
+            ProjectIndex index = getExistingIndex(run.getParent());
+            if (index != null) {
+                index.update(run.getNumber(), false);
+            }
+            checkUpstreamBuilds(run);
+        }
+    }
+}
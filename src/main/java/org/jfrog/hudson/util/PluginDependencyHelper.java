@@ -55,4 +55,26 @@ public class PluginDependencyHelper {
 
         return remoteDependencyDir;
     }
+
+    /**
+     * @return The directory of the checksum cache of the node the workspace belongs to, next to the plugin dependencies
+     * directory
+     */
+    public static FilePath getChecksumCacheDirectory(FilePath workspace) {
+        return new FilePath(workspace.getParent(), "artifactory-plugin/checksums");
+    }
+
+    /**
+     * @return The directory of the dependency cache of the node the workspace belongs to
+     */
+    public static FilePath getDependencyCacheDirectory(FilePath workspace) {
+        return new FilePath(workspace.getParent(), "artifactory-plugin/dependencies");
+    }
+
+    /**
+     * @return The directory of the checksum cache of the master
+     */
+    public static File getMasterChecksumCacheDirectory() {
+        return new File(Hudson.getInstance().getRootDir(), "artifactory-plugin/checksums");
+    }
 }
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.base.Predicate;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache of values that are expensive to load, such as lists fetched from Artifactory. Only the first load of a key
+ * blocks the caller. Once a value is older than {@link #REFRESH_RATIO} of its time to live, it is reloaded in the
+ * background while the current value is still returned, and a value that could not be reloaded is served stale until
+ * it is {@link #MAX_AGE_RATIO} times older than its time to live. An older value is never returned, the caller loads
+ * it again and gets the failure if the load fails.
+ */
+public class RefreshingCache<K, V> {
+    private static final Logger log = Logger.getLogger(RefreshingCache.class.getName());
+
+    /**
+     * Part of the time to live after which a value is reloaded in the background
+     */
+    static final double REFRESH_RATIO = 0.8;
+
+    /**
+     * Multiple of the time to live after which a value that could not be reloaded is no longer returned
+     */
+    static final int MAX_AGE_RATIO = 3;
+
+    private static final int MAX_REFRESH_THREADS = 4;
+
+    private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<K, Entry<V>>();
+    private final ThreadPoolExecutor refreshExecutor;
+
+    /**
+     * @param name Name prefix of the background refresh threads
+     */
+    public RefreshingCache(String name) {
+        refreshExecutor = new ThreadPoolExecutor(0, MAX_REFRESH_THREADS, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(), new DaemonThreadFactory(name));
+    }
+
+    /**
+     * @param key    The key of the value
+     * @param ttl    Time to live of the value in milliseconds
+     * @param loader Loads the value when it is missing or old
+     * @return The cached value, loaded by the calling thread only if the key was never loaded successfully or its
+     *         value is too old to be returned
+     * @throws Exception If the key had to be loaded by the calling thread and the load failed
+     */
+    public V get(K key, long ttl, Callable<V> loader) throws Exception {
+        Entry<V> entry = getEntry(key);
+        long maxAge = ttl * MAX_AGE_RATIO;
+        if (!entry.loaded || entry.getAge() > maxAge) {
+            synchronized (entry) {
+                // concurrent requests wait for a single load
+                if (!entry.loaded || entry.getAge() > maxAge) {
+                    entry.set(loader.call());
+                }
+            }
+            return entry.value;
+        }
+        V value = entry.value;
+        if (entry.getAge() > ttl * REFRESH_RATIO) {
+            refresh(entry, loader);
+        }
+        return value;
+    }
+
+    /**
+     * Loads the key in the background if it was never loaded successfully, so a later {@link #get} does not wait for
+     * the load. A {@link #get} of the key while it is being loaded waits for the background load.
+     */
+    public void prefetch(K key, final Callable<V> loader) {
+        final Entry<V> entry = getEntry(key);
+        if (entry.loaded || !entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        synchronized (entry) {
+                            if (!entry.loaded) {
+                                entry.set(loader.call());
+                            }
+                        }
+                    } catch (Exception e) {
+                        // the next get loads the key again and reports the failure
+                        log.log(Level.FINE, "Could not prefetch a cached value: " + e.getMessage());
+                    } finally {
+                        entry.refreshing.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    public void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    /**
+     * Removes the keys that match the given predicate
+     */
+    public void invalidateIf(Predicate<? super K> predicate) {
+        Iterator<K> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (predicate.apply(iterator.next())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    private Entry<V> getEntry(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            Entry<V> newEntry = new Entry<V>();
+            entry = entries.putIfAbsent(key, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            }
+        }
+        return entry;
+    }
+
+    private void refresh(final Entry<V> entry, final Callable<V> loader) {
+        if (!entry.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        entry.set(loader.call());
+                    } catch (Exception e) {
+                        // the key is not logged since it might contain credentials
+                        log.log(Level.WARNING, "Could not refresh a cached value, keeping the previous value: " +
+                                e.getMessage());
+                    } finally {
+                        entry.refreshing.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // all the refresh threads are busy, the next request retries
+            entry.refreshing.set(false);
+        }
+    }
+
+    private static class Entry<V> {
+        private volatile V value;
+        private volatile long loadedAt;
+        private volatile boolean loaded;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private void set(V value) {
+            this.value = value;
+            this.loadedAt = System.currentTimeMillis();
+            this.loaded = true;
+        }
+
+        private long getAge() {
+            return System.currentTimeMillis() - loadedAt;
+        }
+    }
+}
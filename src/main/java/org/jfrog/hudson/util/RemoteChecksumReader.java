@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import org.apache.commons.lang.StringUtils;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+
+/**
+ * Reads the checksums Artifactory reports for an artifact with a HEAD request, without downloading its content.
+ */
+public class RemoteChecksumReader {
+
+    private final HttpConnectionFactory connectionFactory;
+
+    public RemoteChecksumReader(HttpConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * @param url The full URL of the artifact, including matrix parameters if any
+     * @return The checksums of the artifact, null if the artifact was not found or Artifactory did not report its SHA1
+     * checksum. The MD5 checksum might be null.
+     */
+    public ChecksumCalculator.Checksums readChecksums(String url) throws IOException {
+        HttpURLConnection connection = connectionFactory.openConnection(url);
+        try {
+            connection.setRequestMethod("HEAD");
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+                return null;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Failed to read the checksums of '" + url + "'. Status code: " + status + " " +
+                        connection.getResponseMessage());
+            }
+            String sha1 = connection.getHeaderField("X-Checksum-Sha1");
+            if (StringUtils.isBlank(sha1)) {
+                return null;
+            }
+            return new ChecksumCalculator.Checksums(connection.getHeaderField("X-Checksum-Md5"), sha1);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
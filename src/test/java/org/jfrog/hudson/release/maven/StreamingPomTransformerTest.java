@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.release.maven;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the formatting preservation of the {@link StreamingPomTransformer}.
+ */
+public class StreamingPomTransformerTest {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private File pomFile;
+
+    @Before
+    public void setUp() throws Exception {
+        pomFile = File.createTempFile("pom", ".xml");
+    }
+
+    @After
+    public void tearDown() {
+        pomFile.delete();
+    }
+
+    @Test
+    public void formattingAndCommentsArePreserved() throws Exception {
+        String pom = "<?xml version='1.0'?>\r\n" +
+                "<project xmlns=\"http://maven.apache.org/POM/4.0.0\"\r\n" +
+                "         attr = 'x'>\r\n" +
+                "  <!-- <version>1.0</version> -->\r\n" +
+                "  <groupId>org.jfrog.test</groupId><artifactId>one</artifactId>\r\n" +
+                "  <version >1.0-SNAPSHOT</version>\r\n" +
+                "  <dependencies>\r\n" +
+                "    <dependency><groupId>org.jfrog.test</groupId>\r\n" +
+                "      <artifactId>two</artifactId><!-- reactor --><version>1.0-SNAPSHOT</version>\r\n" +
+                "      <exclusions><exclusion><groupId>a</groupId><artifactId>b</artifactId></exclusion></exclusions>\r\n" +
+                "    </dependency>\r\n" +
+                "    <dependency><groupId>other</groupId><artifactId>three</artifactId><version>2.0</version></dependency>\r\n" +
+                "  </dependencies>\r\n" +
+                "  <empty/>\r\n" +
+                "</project>\r\n";
+        Files.write(pom, pomFile, UTF8);
+
+        assertEquals(Boolean.TRUE, createTransformer(true).transform(pomFile));
+
+        String expected = pom.replace("<version >1.0-SNAPSHOT</version>", "<version >1.0</version>")
+                .replace("<!-- reactor --><version>1.0-SNAPSHOT</version>", "<!-- reactor --><version>1.0</version>");
+        assertEquals(expected, Files.toString(pomFile, UTF8));
+    }
+
+    @Test
+    public void unchangedPomIsNotWritten() throws Exception {
+        String pom = "<project><groupId>org.jfrog.test</groupId><artifactId>one</artifactId>" +
+                "<version>1.0</version></project>";
+        Files.write(pom, pomFile, UTF8);
+        pomFile.setLastModified(1000);
+
+        assertEquals(Boolean.FALSE, createTransformer(true).transform(pomFile));
+        assertEquals(1000, pomFile.lastModified());
+    }
+
+    @Test
+    public void entitiesAreLeftToTheDomTransformer() throws Exception {
+        String pom = "<project><groupId>org.jfrog.test</groupId><artifactId>one</artifactId>" +
+                "<version>1.0&#45;SNAPSHOT</version></project>";
+        Files.write(pom, pomFile, UTF8);
+
+        assertNull(createTransformer(true).transform(pomFile));
+        assertEquals(pom, Files.toString(pomFile, UTF8));
+    }
+
+    private StreamingPomTransformer createTransformer(boolean failOnSnapshot) {
+        Map<String, String> modules = Maps.newHashMap();
+        modules.put("org.jfrog.test:one", "1.0");
+        modules.put("org.jfrog.test:two", "1.0");
+        return new StreamingPomTransformer("org.jfrog.test:one", modules, null, failOnSnapshot);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.release.scm.git;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the parsing of the porcelain push output by {@link PushedRefs}.
+ */
+public class PushedRefsTest {
+
+    @Test
+    public void updatedRefsAreReported() {
+        PushedRefs pushedRefs = PushedRefs.fromPorcelain("To git@example.com:repo.git\n" +
+                "*\trefs/heads/release-1.0:refs/heads/release-1.0\t[new branch]\n" +
+                " \trefs/heads/master:refs/heads/master\t1234567..89abcde\n" +
+                "-\t:refs/tags/old\t[deleted]\n" +
+                "Done\n");
+        assertTrue(pushedRefs.isUpdated("refs/heads/release-1.0"));
+        assertTrue(pushedRefs.isUpdated("refs/heads/master"));
+        assertTrue(pushedRefs.isUpdated("refs/tags/old"));
+        assertNull(pushedRefs.getErrorMessage());
+    }
+
+    @Test
+    public void rejectedAndUpToDateRefsAreNotUpdated() {
+        PushedRefs pushedRefs = PushedRefs.fromPorcelain("Command returned status code 1:\nTo /tmp/repo.git\n" +
+                "!\trefs/heads/master:refs/heads/master\t[rejected] (non-fast-forward)\n" +
+                "=\trefs/tags/1.0:refs/tags/1.0\t[up to date]\n" +
+                "Done");
+        assertFalse(pushedRefs.isUpdated("refs/heads/master"));
+        assertFalse(pushedRefs.isUpdated("refs/tags/1.0"));
+        assertEquals("Remote refs were not updated: 'refs/heads/master' [rejected] (non-fast-forward)",
+                pushedRefs.getErrorMessage());
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.apache.commons.io.output.NullOutputStream;
+import org.codehaus.jackson.JsonGenerator;
+import org.jfrog.build.api.Artifact;
+import org.jfrog.build.api.Build;
+import org.jfrog.build.api.Dependency;
+import org.jfrog.build.api.Module;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Compares the peak heap usage of sending the build info through the build info client, which serializes it to a
+ * string, with the streaming serialization of the {@link BuildInfoUploader}. Not a test, run the main method with a
+ * fixed heap (for example -Xms1g -Xmx1g) for comparable results:
+ * <pre>
+ * java -cp ... org.jfrog.hudson.util.BuildInfoUploadBenchmark [modules] [artifacts per module]
+ * </pre>
+ */
+public class BuildInfoUploadBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int modules = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int artifactsPerModule = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        Build buildInfo = createBuildInfo(modules, artifactsPerModule);
+
+        // warm up both paths before measuring
+        serializeToString(buildInfo);
+        serializeCompressed(buildInfo);
+
+        long baseline = resetPeakHeapUsage();
+        long stringLength = serializeToString(buildInfo);
+        long stringPeak = getPeakHeapUsage() - baseline;
+
+        baseline = resetPeakHeapUsage();
+        long compressedLength = serializeCompressed(buildInfo);
+        long compressedPeak = getPeakHeapUsage() - baseline;
+
+        System.out.println(String.format("Build info of %d modules with %d artifacts and dependencies each", modules,
+                artifactsPerModule));
+        System.out.println(String.format("In memory string: %,d bytes sent, peak heap above baseline %,d bytes",
+                stringLength, stringPeak));
+        System.out.println(String.format("Streaming gzip:   %,d bytes sent, peak heap above baseline %,d bytes",
+                compressedLength, compressedPeak));
+    }
+
+    /**
+     * Serializes the build info like the build info client: to a string, which is then encoded to the request body.
+     */
+    private static long serializeToString(Build buildInfo) throws IOException {
+        StringWriter writer = new StringWriter();
+        JsonGenerator generator = BuildInfoUploader.createJsonFactory().createJsonGenerator(writer);
+        generator.useDefaultPrettyPrinter();
+        generator.writeObject(buildInfo);
+        byte[] body = writer.getBuffer().toString().getBytes("UTF-8");
+        return body.length;
+    }
+
+    private static long serializeCompressed(Build buildInfo) throws IOException {
+        CountingOutputStream out = new CountingOutputStream(new NullOutputStream());
+        BuildInfoUploader.writeCompressed(buildInfo, out);
+        return out.getByteCount();
+    }
+
+    private static long resetPeakHeapUsage() {
+        System.gc();
+        long used = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                used += pool.getUsage().getUsed();
+            }
+        }
+        return used;
+    }
+
+    private static long getPeakHeapUsage() {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    static Build createBuildInfo(int modules, int artifactsPerModule) {
+        Build buildInfo = new Build();
+        buildInfo.setName("benchmark");
+        buildInfo.setNumber("1");
+        buildInfo.setStarted("2012-01-01T00:00:00.000+0000");
+        Properties properties = new Properties();
+        for (int i = 0; i < 200; i++) {
+            properties.setProperty("buildInfo.env.VARIABLE_" + i, "value of the environment variable " + i);
+        }
+        buildInfo.setProperties(properties);
+
+        List<Module> moduleList = Lists.newArrayList();
+        for (int m = 0; m < modules; m++) {
+            Module module = new Module();
+            module.setId("org.jfrog.benchmark:module-" + m + ":1.0");
+            List<Artifact> artifacts = Lists.newArrayList();
+            List<Dependency> dependencies = Lists.newArrayList();
+            for (int a = 0; a < artifactsPerModule; a++) {
+                Artifact artifact = new Artifact();
+                artifact.setName("module-" + m + "-artifact-" + a + ".jar");
+                artifact.setType("jar");
+                artifact.setSha1(checksum(m, a, 40));
+                artifact.setMd5(checksum(m, a, 32));
+                artifacts.add(artifact);
+
+                Dependency dependency = new Dependency();
+                dependency.setId("org.jfrog.benchmark:dependency-" + a + ":1.0");
+                dependency.setType("jar");
+                dependency.setScopes(Sets.newHashSet("compile"));
+                dependency.setSha1(checksum(a, m, 40));
+                dependency.setMd5(checksum(a, m, 32));
+                dependencies.add(dependency);
+            }
+            module.setArtifacts(artifacts);
+            module.setDependencies(dependencies);
+            moduleList.add(module);
+        }
+        buildInfo.setModules(moduleList);
+        return buildInfo;
+    }
+
+    private static String checksum(int first, int second, int length) {
+        StringBuilder checksum = new StringBuilder(length);
+        long seed = first * 31L + second;
+        while (checksum.length() < length) {
+            seed = seed * 6364136223846793005L + 1442695040888963407L;
+            checksum.append(Long.toHexString(seed >>> 4));
+        }
+        return checksum.substring(0, length);
+    }
+}
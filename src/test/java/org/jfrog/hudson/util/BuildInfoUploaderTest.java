@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.jfrog.build.api.Artifact;
+import org.jfrog.build.api.Build;
+import org.jfrog.build.api.Dependency;
+import org.jfrog.build.api.Module;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the streaming serialization of the {@link BuildInfoUploader}.
+ */
+public class BuildInfoUploaderTest {
+
+    @Test
+    public void compressedBuildInfoIsDeserializedToTheSameBuild() throws Exception {
+        Build buildInfo = BuildInfoUploadBenchmark.createBuildInfo(3, 4);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BuildInfoUploader.writeCompressed(buildInfo, out);
+
+        // read with a plain mapper, independent of the factory the build info is written with
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.configure(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        Build read = mapper.readValue(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())), Build.class);
+        assertBuildInfoEquals(buildInfo, read);
+    }
+
+    @Test
+    public void compressedBuildInfoIsReadBack() throws Exception {
+        Build buildInfo = BuildInfoUploadBenchmark.createBuildInfo(2, 3);
+
+        File file = File.createTempFile("build-info", ".json.gz");
+        try {
+            BuildInfoUploader.writeCompressed(buildInfo, new FileOutputStream(file));
+            assertBuildInfoEquals(buildInfo, BuildInfoUploader.readCompressed(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void assertBuildInfoEquals(Build expected, Build actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getNumber(), actual.getNumber());
+        assertEquals(expected.getStarted(), actual.getStarted());
+        assertEquals(expected.getProperties(), actual.getProperties());
+        assertEquals(expected.getModules().size(), actual.getModules().size());
+        for (int m = 0; m < expected.getModules().size(); m++) {
+            Module expectedModule = expected.getModules().get(m);
+            Module actualModule = actual.getModules().get(m);
+            assertEquals(expectedModule.getId(), actualModule.getId());
+
+            assertEquals(expectedModule.getArtifacts().size(), actualModule.getArtifacts().size());
+            for (int a = 0; a < expectedModule.getArtifacts().size(); a++) {
+                Artifact expectedArtifact = expectedModule.getArtifacts().get(a);
+                Artifact actualArtifact = actualModule.getArtifacts().get(a);
+                assertEquals(expectedArtifact.getName(), actualArtifact.getName());
+                assertEquals(expectedArtifact.getType(), actualArtifact.getType());
+                assertEquals(expectedArtifact.getSha1(), actualArtifact.getSha1());
+                assertEquals(expectedArtifact.getMd5(), actualArtifact.getMd5());
+            }
+
+            assertEquals(expectedModule.getDependencies().size(), actualModule.getDependencies().size());
+            for (int d = 0; d < expectedModule.getDependencies().size(); d++) {
+                Dependency expectedDependency = expectedModule.getDependencies().get(d);
+                Dependency actualDependency = actualModule.getDependencies().get(d);
+                assertEquals(expectedDependency.getId(), actualDependency.getId());
+                assertEquals(expectedDependency.getType(), actualDependency.getType());
+                assertEquals(expectedDependency.getScopes(), actualDependency.getScopes());
+                assertEquals(expectedDependency.getSha1(), actualDependency.getSha1());
+                assertEquals(expectedDependency.getMd5(), actualDependency.getMd5());
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the {@link ChecksumCache}.
+ */
+public class ChecksumCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void changedFileIsNotServedFromCache() throws Exception {
+        ChecksumCache cache = new ChecksumCache(folder.getRoot(), 10);
+        File file = folder.newFile("a.txt");
+        FileUtils.writeStringToFile(file, "abc");
+        cache.getChecksums(file);
+        assertNotNull(cache.getCachedChecksums(file));
+
+        FileUtils.writeStringToFile(file, "abcd");
+        file.setLastModified(file.lastModified() + 2000);
+        assertNull(cache.getCachedChecksums(file));
+        assertEquals("81fe8bfe87576c3ecb22426f8e57847382917acf", cache.getChecksums(file).getSha1());
+    }
+
+    @Test
+    public void fileChangedWhileHashedIsNotCached() throws Exception {
+        ChecksumCache cache = new ChecksumCache(folder.getRoot(), 10);
+        File file = folder.newFile("a.txt");
+        FileUtils.writeStringToFile(file, "abc");
+        long size = file.length();
+        long lastModified = file.lastModified();
+        ChecksumCalculator.Checksums checksums = ChecksumCalculator.calculateChecksums(file);
+
+        FileUtils.writeStringToFile(file, "abcd");
+        cache.put(file, size, lastModified, checksums);
+        assertNull(cache.getCachedChecksums(file));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvicted() throws Exception {
+        ChecksumCache cache = new ChecksumCache(folder.getRoot(), 2);
+        File first = folder.newFile("1.txt");
+        FileUtils.writeStringToFile(first, "1");
+        File second = folder.newFile("2.txt");
+        FileUtils.writeStringToFile(second, "2");
+        File third = folder.newFile("3.txt");
+        FileUtils.writeStringToFile(third, "3");
+        cache.getChecksums(first);
+        cache.getChecksums(second);
+        cache.getCachedChecksums(first);
+        cache.getChecksums(third);
+
+        assertNotNull(cache.getCachedChecksums(first));
+        assertNull(cache.getCachedChecksums(second));
+        assertNotNull(cache.getCachedChecksums(third));
+    }
+
+    @Test
+    public void savedIndexIsLoadedByNewInstance() throws Exception {
+        ChecksumCache cache = new ChecksumCache(folder.getRoot(), 10);
+        File file = folder.newFile("a.txt");
+        FileUtils.writeStringToFile(file, "abc");
+        cache.getChecksums(file);
+        cache.save();
+
+        ChecksumCalculator.Checksums checksums = new ChecksumCache(folder.getRoot(), 10).getCachedChecksums(file);
+        assertNotNull(checksums);
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", checksums.getMd5());
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", checksums.getSha1());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the {@link ChecksumCalculator}.
+ */
+public class ChecksumCalculatorTest {
+
+    @Test
+    public void singleFileChecksums() throws Exception {
+        File file = createFile("abc");
+        ChecksumCalculator.Checksums checksums = ChecksumCalculator.calculateChecksums(file);
+        assertEquals("900150983cd24fb0d6963f7d28e17f72", checksums.getMd5());
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", checksums.getSha1());
+    }
+
+    @Test
+    public void emptyFileChecksums() throws Exception {
+        ChecksumCalculator.Checksums checksums = ChecksumCalculator.calculateChecksums(createFile(""));
+        assertEquals("d41d8cd98f00b204e9800998ecf8427e", checksums.getMd5());
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", checksums.getSha1());
+    }
+
+    @Test
+    public void parallelChecksumsMatchSingleFileChecksums() throws Exception {
+        List<File> files = Lists.newArrayList();
+        for (int i = 0; i < 8; i++) {
+            files.add(createFile("content " + i));
+        }
+        Map<File, ChecksumCalculator.Checksums> checksums = ChecksumCalculator.calculateChecksums(files, 4);
+        assertEquals(files.size(), checksums.size());
+        for (File file : files) {
+            assertEquals(ChecksumCalculator.calculateChecksums(file).getSha1(), checksums.get(file).getSha1());
+            assertEquals(ChecksumCalculator.calculateChecksums(file).getMd5(), checksums.get(file).getMd5());
+        }
+    }
+
+    private File createFile(String content) throws Exception {
+        File file = File.createTempFile("checksum", ".txt");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, content);
+        return file;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the response checks of the {@link ChecksumDeployer}.
+ */
+public class ChecksumDeployerTest {
+
+    private static final String SHA1 = "a9993e364706816aba3e25717850c26c9cd0d89d";
+
+    @Test
+    public void matchingChecksumIsDeployed() throws Exception {
+        assertTrue(ChecksumDeployer.isDeployedContent(
+                response("{\"size\":\"3\",\"checksums\":{\"sha1\":\"A9993E364706816ABA3E25717850C26C9CD0D89D\"}}"),
+                SHA1));
+    }
+
+    @Test
+    public void emptyContentIsNotDeployed() throws Exception {
+        assertFalse(ChecksumDeployer.isDeployedContent(
+                response("{\"size\":\"0\",\"checksums\":{\"sha1\":\"da39a3ee5e6b4b0d3255bfef95601890afd80709\"}}"),
+                SHA1));
+    }
+
+    @Test
+    public void responseWithoutChecksumsIsNotDeployed() throws Exception {
+        assertFalse(ChecksumDeployer.isDeployedContent(response("{\"size\":\"3\"}"), SHA1));
+        assertFalse(ChecksumDeployer.isDeployedContent(response("Created"), SHA1));
+        assertFalse(ChecksumDeployer.isDeployedContent(response(""), SHA1));
+    }
+
+    private InputStream response(String body) throws Exception {
+        return new ByteArrayInputStream(body.getBytes("UTF-8"));
+    }
+}
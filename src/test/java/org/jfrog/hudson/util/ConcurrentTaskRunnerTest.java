@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Lists;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link ConcurrentTaskRunner}.
+ */
+public class ConcurrentTaskRunnerTest {
+
+    @Test
+    public void resultsAndLogsKeepSubmissionOrder() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<NumberTask> tasks = Lists.newArrayList();
+        for (int i = 0; i < 20; i++) {
+            tasks.add(new NumberTask(i, false));
+        }
+
+        List<Integer> results = new ConcurrentTaskRunner("test", 4, true, new PrintStream(out, true)).run(tasks);
+
+        StringBuilder expectedLog = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            assertEquals(Integer.valueOf(i), results.get(i));
+            expectedLog.append("task ").append(i).append(System.getProperty("line.separator"));
+        }
+        assertEquals(expectedLog.toString(), out.toString());
+    }
+
+    @Test
+    public void nestedTaskLogsAreWrittenWithTheEnclosingTask() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<ConcurrentTaskRunner.LoggingTask<Integer>> phases = Lists.newArrayList();
+        for (int phase = 0; phase < 2; phase++) {
+            final int offset = phase * 10;
+            phases.add(new ConcurrentTaskRunner.LoggingTask<Integer>() {
+                public Integer call() throws Exception {
+                    List<NumberTask> tasks = Lists.newArrayList();
+                    for (int i = 0; i < 3; i++) {
+                        tasks.add(new NumberTask(offset + i, false));
+                    }
+                    new ConcurrentTaskRunner("nested", 3, true, getLog()).run(tasks);
+                    return offset;
+                }
+            });
+        }
+
+        new ConcurrentTaskRunner("test", 2, true, new PrintStream(out, true)).run(phases);
+
+        String separator = System.getProperty("line.separator");
+        assertEquals("task 0" + separator + "task 1" + separator + "task 2" + separator + "task 10" + separator +
+                "task 11" + separator + "task 12" + separator, out.toString());
+    }
+
+    @Test
+    public void failFastRethrowsTheFailure() throws Exception {
+        List<NumberTask> tasks = Lists.newArrayList(new NumberTask(0, false), new NumberTask(1, true),
+                new NumberTask(2, false));
+        try {
+            new ConcurrentTaskRunner("test", 2, true, new PrintStream(new ByteArrayOutputStream())).run(tasks);
+            fail("Expected the task failure to be rethrown");
+        } catch (IOException e) {
+            assertEquals("failed 1", e.getMessage());
+        }
+    }
+
+    @Test
+    public void collectedFailuresAreReportedAfterAllTasksRan() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        List<NumberTask> tasks = Lists.newArrayList(new NumberTask(0, true), new NumberTask(1, false),
+                new NumberTask(2, true));
+        try {
+            new ConcurrentTaskRunner("test", 2, false, new PrintStream(out, true)).run(tasks);
+            fail("Expected the task failures to be reported");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().startsWith("2 out of 3 tasks failed"));
+        }
+        assertTrue(out.toString().contains("task 1"));
+        assertTrue(out.toString().contains("Error: failed 2"));
+    }
+
+    private static class NumberTask extends ConcurrentTaskRunner.LoggingTask<Integer> {
+        private final int number;
+        private final boolean fail;
+
+        private NumberTask(int number, boolean fail) {
+            this.number = number;
+            this.fail = fail;
+        }
+
+        public Integer call() throws Exception {
+            // later tasks finish first to make sure the order is not the completion order
+            Thread.sleep((20 - number) * 2);
+            log("task " + number);
+            if (fail) {
+                throw new IOException("failed " + number);
+            }
+            return number;
+        }
+    }
+}
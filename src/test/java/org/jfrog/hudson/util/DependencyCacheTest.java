@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the {@link DependencyCache}.
+ */
+public class DependencyCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void storedContentIsMaterialized() throws Exception {
+        DependencyCache cache = new DependencyCache(new File(folder.getRoot(), "cache"), 1024);
+        File file = folder.newFile("a.txt");
+        FileUtils.writeStringToFile(file, "abc");
+        String sha1 = ChecksumCalculator.calculateChecksums(file).getSha1();
+        cache.store(file, sha1);
+
+        File target = new File(folder.getRoot(), "workspace/lib/a.txt");
+        assertTrue(cache.materialize(sha1, target));
+        assertEquals("abc", FileUtils.readFileToString(target));
+        assertFalse(cache.materialize("0000000000000000000000000000000000000000", target));
+    }
+
+    @Test
+    public void leastRecentlyUsedEntriesAreEvictedAboveMaxSize() throws Exception {
+        DependencyCache cache = new DependencyCache(new File(folder.getRoot(), "cache"), 25);
+        File first = folder.newFile("1.txt");
+        FileUtils.writeStringToFile(first, "1111111111");
+        File second = folder.newFile("2.txt");
+        FileUtils.writeStringToFile(second, "2222222222");
+        File third = folder.newFile("3.txt");
+        FileUtils.writeStringToFile(third, "3333333333");
+        String firstSha1 = ChecksumCalculator.calculateChecksums(first).getSha1();
+        String secondSha1 = ChecksumCalculator.calculateChecksums(second).getSha1();
+        String thirdSha1 = ChecksumCalculator.calculateChecksums(third).getSha1();
+
+        cache.store(first, firstSha1);
+        cache.store(second, secondSha1);
+        assertTrue(cache.materialize(firstSha1, new File(folder.getRoot(), "out/1.txt")));
+        cache.store(third, thirdSha1);
+
+        assertEquals(20, cache.getSize());
+        assertTrue(cache.materialize(firstSha1, new File(folder.getRoot(), "out/1.txt")));
+        assertFalse(cache.materialize(secondSha1, new File(folder.getRoot(), "out/2.txt")));
+        assertTrue(cache.materialize(thirdSha1, new File(folder.getRoot(), "out/3.txt")));
+    }
+
+    @Test
+    public void materializedFileIsIndependentOfTheCache() throws Exception {
+        DependencyCache cache = new DependencyCache(new File(folder.getRoot(), "cache"), 1024);
+        File file = folder.newFile("a.txt");
+        FileUtils.writeStringToFile(file, "abc");
+        String sha1 = ChecksumCalculator.calculateChecksums(file).getSha1();
+        cache.store(file, sha1);
+        assertTrue(file.canWrite());
+
+        File target = new File(folder.getRoot(), "workspace/a.txt");
+        assertTrue(cache.materialize(sha1, target));
+        assertTrue(target.canWrite());
+        FileUtils.writeStringToFile(target, "changed");
+
+        File other = new File(folder.getRoot(), "workspace/b.txt");
+        assertTrue(cache.materialize(sha1, other));
+        assertEquals("abc", FileUtils.readFileToString(other));
+    }
+
+    @Test
+    public void corruptedEntryIsNotMaterialized() throws Exception {
+        DependencyCache cache = new DependencyCache(new File(folder.getRoot(), "cache"), 1024);
+        File file = folder.newFile("a.txt");
+        FileUtils.writeStringToFile(file, "abc");
+        String sha1 = ChecksumCalculator.calculateChecksums(file).getSha1();
+        cache.store(file, sha1);
+
+        File entry = new File(new File(new File(folder.getRoot(), "cache"), sha1.substring(0, 2)), sha1);
+        entry.setWritable(true);
+        FileUtils.writeStringToFile(entry, "abd");
+
+        File target = new File(folder.getRoot(), "workspace/a.txt");
+        assertFalse(cache.materialize(sha1, target));
+        assertFalse(target.exists());
+        assertFalse(entry.exists());
+        assertEquals(0, cache.getSize());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Maps;
+import org.jfrog.build.api.BuildInfoProperties;
+import org.jfrog.build.api.builder.BuildInfoBuilder;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the {@link EnvironmentFilter}.
+ */
+public class EnvironmentFilterTest {
+
+    @Test
+    public void systemVariablesAreExcludedUnlessIncluded() {
+        String systemKey = System.getenv().keySet().iterator().next();
+        Map<String, String> env = Maps.newHashMap();
+        env.put(systemKey, "value");
+        env.put("ENVIRONMENT_FILTER_TEST_VAR", "value");
+
+        Map<String, String> filtered = new EnvironmentFilter(false, null).filter(env);
+        assertEquals(1, filtered.size());
+        assertEquals("value", filtered.get("ENVIRONMENT_FILTER_TEST_VAR"));
+
+        assertEquals(env, new EnvironmentFilter(true, null).filter(env));
+    }
+
+    @Test
+    public void blankPatternsAcceptAllKeys() {
+        EnvironmentFilter filter = new EnvironmentFilter(true, new IncludesExcludes("", " "));
+        assertTrue(filter.accept("ANY_KEY"));
+    }
+
+    @Test
+    public void includePatternsAcceptOnlyMatchingKeys() {
+        EnvironmentFilter filter = new EnvironmentFilter(true, new IncludesExcludes("JOB_*,BUILD_NUMBER", null));
+        assertTrue(filter.accept("JOB_NAME"));
+        assertTrue(filter.accept("BUILD_NUMBER"));
+        assertFalse(filter.accept("DB_PASSWORD"));
+    }
+
+    @Test
+    public void excludePatternsRejectMatchingKeys() {
+        EnvironmentFilter filter = new EnvironmentFilter(true, new IncludesExcludes(null, "*PASSWORD*,*SECRET*"));
+        assertTrue(filter.accept("JOB_NAME"));
+        assertFalse(filter.accept("DB_PASSWORD"));
+        assertFalse(filter.accept("PASSWORD_FILE"));
+        assertFalse(filter.accept("AWS_SECRET_KEY"));
+    }
+
+    @Test
+    public void excludePatternsOverrideIncludePatterns() {
+        EnvironmentFilter filter = new EnvironmentFilter(true, new IncludesExcludes("DB_*", "*PASSWORD*"));
+        assertTrue(filter.accept("DB_USER"));
+        assertFalse(filter.accept("DB_PASSWORD"));
+        assertFalse(filter.accept("JOB_NAME"));
+    }
+
+    @Test
+    public void buildVariablesAreFilteredByPatterns() {
+        Map<String, String> buildVariables = Maps.newHashMap();
+        buildVariables.put("RELEASE_VERSION", "1.0");
+        buildVariables.put("DEPLOY_PASSWORD", "secret");
+        EnvironmentFilter filter = new EnvironmentFilter(true, new IncludesExcludes(null, "*PASSWORD*"));
+
+        Map<String, String> filtered = filter.filter(buildVariables);
+        assertEquals(1, filtered.size());
+        assertEquals("1.0", filtered.get("RELEASE_VERSION"));
+
+        BuildInfoBuilder builder = new BuildInfoBuilder("test").number("1").started("2012-01-01T00:00:00.000+0000");
+        filter.addProperties(buildVariables, builder);
+        Properties properties = builder.build().getProperties();
+        assertEquals("1.0", properties.get(BuildInfoProperties.BUILD_INFO_ENVIRONMENT_PREFIX + "RELEASE_VERSION"));
+        assertFalse(properties.containsKey(BuildInfoProperties.BUILD_INFO_ENVIRONMENT_PREFIX + "DEPLOY_PASSWORD"));
+    }
+
+    @Test
+    public void propertyKeyIsPrefixed() {
+        String propertyKey = EnvironmentFilter.getPropertyKey("JOB_NAME");
+        assertEquals(BuildInfoProperties.BUILD_INFO_ENVIRONMENT_PREFIX + "JOB_NAME", propertyKey);
+        assertSame(propertyKey, EnvironmentFilter.getPropertyKey("JOB_NAME"));
+    }
+}
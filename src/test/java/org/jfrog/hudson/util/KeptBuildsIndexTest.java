@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import com.google.common.collect.Sets;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the project index of the {@link KeptBuildsIndex}.
+ */
+public class KeptBuildsIndexTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void indexIsReadFromItsFile() throws Exception {
+        File file = new File(folder.getRoot(), "kept-builds.properties");
+        KeptBuildsIndex.ProjectIndex index = new KeptBuildsIndex.ProjectIndex(file);
+        assertFalse(index.isScanned());
+        index.reset(Arrays.asList(3, 12, 7), Sets.newHashSet("downstream"));
+        index.check(15);
+
+        KeptBuildsIndex.ProjectIndex loaded = new KeptBuildsIndex.ProjectIndex(file);
+        assertTrue(loaded.isScanned());
+        assertEquals(Arrays.asList("12", "7", "3"), loaded.getKeptBuildNumbers());
+        assertEquals(Arrays.asList(15), loaded.getPendingChecks());
+        assertEquals(Collections.singleton("downstream"), loaded.getKeepDependencies());
+    }
+
+    @Test
+    public void updateClearsTheCheckOfTheBuild() throws Exception {
+        KeptBuildsIndex.ProjectIndex index = createScannedIndex();
+        index.check(5);
+        index.check(6);
+        index.update(5, true);
+        index.update(6, false);
+        index.update(3, false);
+
+        assertTrue(index.getPendingChecks().isEmpty());
+        assertEquals(Arrays.asList("5"), index.getKeptBuildNumbers());
+    }
+
+    @Test
+    public void changesAreIgnoredUntilTheBuildsAreScanned() throws Exception {
+        File file = new File(folder.getRoot(), "kept-builds.properties");
+        KeptBuildsIndex.ProjectIndex index = new KeptBuildsIndex.ProjectIndex(file);
+        index.check(5);
+        index.update(6, true);
+
+        assertFalse(index.isScanned());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void invalidFileIsScannedAgain() throws Exception {
+        File file = new File(folder.getRoot(), "kept-builds.properties");
+        FileUtils.writeStringToFile(file, "keptBuilds=3,x\n");
+        assertFalse(new KeptBuildsIndex.ProjectIndex(file).isScanned());
+    }
+
+    private KeptBuildsIndex.ProjectIndex createScannedIndex() {
+        KeptBuildsIndex.ProjectIndex index =
+                new KeptBuildsIndex.ProjectIndex(new File(folder.getRoot(), "kept-builds.properties"));
+        index.reset(Arrays.asList(3), Collections.<String>emptySet());
+        return index;
+    }
+}
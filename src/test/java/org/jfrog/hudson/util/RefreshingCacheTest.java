@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2012 JFrog Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.jfrog.hudson.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the {@link RefreshingCache}.
+ */
+public class RefreshingCacheTest {
+
+    @Test
+    public void freshValueIsNotReloaded() throws Exception {
+        RefreshingCache<String, Integer> cache = new RefreshingCache<String, Integer>("test");
+        CountingLoader loader = new CountingLoader();
+
+        assertEquals(Integer.valueOf(1), cache.get("key", 60000, loader));
+        assertEquals(Integer.valueOf(1), cache.get("key", 60000, loader));
+        assertEquals(1, loader.calls.get());
+    }
+
+    @Test
+    public void oldValueIsServedWhileReloadedInBackground() throws Exception {
+        RefreshingCache<String, Integer> cache = new RefreshingCache<String, Integer>("test");
+        CountingLoader loader = new CountingLoader();
+        cache.get("key", 100, loader);
+        Thread.sleep(150);
+
+        assertEquals(Integer.valueOf(1), cache.get("key", 100, loader));
+        waitForCalls(loader, 2);
+        assertEquals(Integer.valueOf(2), cache.get("key", 60000, loader));
+    }
+
+    @Test
+    public void failedReloadKeepsTheOldValue() throws Exception {
+        RefreshingCache<String, Integer> cache = new RefreshingCache<String, Integer>("test");
+        CountingLoader loader = new CountingLoader();
+        cache.get("key", 100, loader);
+        Thread.sleep(150);
+
+        loader.fail = true;
+        cache.get("key", 100, loader);
+        waitForCalls(loader, 2);
+        assertEquals(Integer.valueOf(1), cache.get("key", 60000, loader));
+    }
+
+    @Test
+    public void valueOlderThanMaxAgeIsLoadedByTheCaller() throws Exception {
+        RefreshingCache<String, Integer> cache = new RefreshingCache<String, Integer>("test");
+        CountingLoader loader = new CountingLoader();
+        cache.get("key", 10, loader);
+        Thread.sleep(10 * RefreshingCache.MAX_AGE_RATIO + 20);
+
+        loader.fail = true;
+        try {
+            cache.get("key", 10, loader);
+            fail("Expected the load failure to be rethrown instead of the old value");
+        } catch (IOException e) {
+            assertEquals("failed 2", e.getMessage());
+        }
+        loader.fail = false;
+        assertEquals(Integer.valueOf(3), cache.get("key", 10, loader));
+    }
+
+    @Test
+    public void failedFirstLoadIsRethrownAndRetried() throws Exception {
+        RefreshingCache<String, Integer> cache = new RefreshingCache<String, Integer>("test");
+        CountingLoader loader = new CountingLoader();
+        loader.fail = true;
+        try {
+            cache.get("key", 60000, loader);
+            fail("Expected the load failure to be rethrown");
+        } catch (IOException e) {
+            assertEquals("failed 1", e.getMessage());
+        }
+        loader.fail = false;
+        assertEquals(Integer.valueOf(2), cache.get("key", 60000, loader));
+    }
+
+    @Test
+    public void prefetchedValueIsNotLoadedAgain() throws Exception {
+        RefreshingCache<String, Integer> cache = new RefreshingCache<String, Integer>("test");
+        CountingLoader loader = new CountingLoader();
+        cache.prefetch("key", loader);
+
+        assertEquals(Integer.valueOf(1), cache.get("key", 60000, loader));
+        cache.prefetch("key", loader);
+        waitForCalls(loader, 1);
+        assertEquals(1, loader.calls.get());
+    }
+
+    private void waitForCalls(CountingLoader loader, int calls) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 5000;
+        while (loader.completed.get() < calls && System.currentTimeMillis() < timeout) {
+            Thread.sleep(5);
+        }
+        // let the background refresh store its value
+        Thread.sleep(20);
+    }
+
+    private static class CountingLoader implements Callable<Integer> {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final AtomicInteger completed = new AtomicInteger();
+        private volatile boolean fail;
+
+        public Integer call() throws Exception {
+            int call = calls.incrementAndGet();
+            try {
+                if (fail) {
+                    throw new IOException("failed " + call);
+                }
+                return call;
+            } finally {
+                completed.incrementAndGet();
+            }
+        }
+    }
+}